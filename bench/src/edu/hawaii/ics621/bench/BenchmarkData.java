@@ -0,0 +1,45 @@
+package edu.hawaii.ics621.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import edu.hawaii.ics621.DoublePoint;
+
+/**
+ * Generates the random inputs shared by the benchmarks. A fixed seed keeps the inputs the same between runs so
+ * that results can be compared.
+ * 
+ * @author George Lee
+ *
+ */
+final class BenchmarkData {
+  static final long SEED = 621;
+  
+  private BenchmarkData() {
+  }
+  
+  /**
+   * @return size points stored one after another, with coordinates uniformly distributed in [0, 1).
+   */
+  static double[] coords(int size, int dimensions, long seed) {
+    Random generator = new Random(seed);
+    double[] coords = new double[size * dimensions];
+    for (int i = 0; i < coords.length; i++) {
+      coords[i] = generator.nextDouble();
+    }
+    
+    return coords;
+  }
+  
+  static List<DoublePoint> points(int size, int dimensions, long seed) {
+    double[] coords = coords(size, dimensions, seed);
+    List<DoublePoint> points = new ArrayList<DoublePoint>(size);
+    for (int i = 0; i < size; i++) {
+      double[] point = new double[dimensions];
+      System.arraycopy(coords, i * dimensions, point, 0, dimensions);
+      points.add(new DoublePoint(point));
+    }
+    
+    return points;
+  }
+}
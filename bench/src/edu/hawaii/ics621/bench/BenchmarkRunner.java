@@ -0,0 +1,28 @@
+package edu.hawaii.ics621.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON so that runs can be compared. The first argument is a
+ * regular expression selecting the benchmarks to run and the second is the result file.
+ * 
+ * @author George Lee
+ *
+ */
+public class BenchmarkRunner {
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : "edu.hawaii.ics621.bench.*";
+    String result = args.length > 1 ? args[1] : "jmh-result.json";
+    
+    Options options = new OptionsBuilder()
+        .include(include)
+        .resultFormat(ResultFormatType.JSON)
+        .result(result)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,52 @@
+package edu.hawaii.ics621.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.algorithms.KMeans;
+
+/**
+ * Measures a complete in-memory clustering run. The algorithm is seeded so that every run takes the same number of
+ * iterations.
+ * 
+ * @author George Lee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClusterBenchmark {
+  @Param({ "1000", "10000", "100000" })
+  public int size;
+  
+  @Param({ "5", "50" })
+  public int clusters;
+  
+  private List<DoublePoint> inputs;
+  
+  @Setup
+  public void setUp() {
+    this.inputs = BenchmarkData.points(this.size, 2, BenchmarkData.SEED);
+  }
+  
+  @Benchmark
+  public List<DoublePoint> cluster() {
+    KMeans kmeans = new KMeans();
+    kmeans.setSeed(BenchmarkData.SEED);
+    return kmeans.cluster(this.inputs, this.clusters);
+  }
+}
@@ -0,0 +1,48 @@
+package edu.hawaii.ics621.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+
+/**
+ * Measures a single distance computation between two points.
+ * 
+ * @author George Lee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+  @Param({ "2", "16", "128" })
+  public int dimensions;
+  
+  private DoublePoint a;
+  private DoublePoint b;
+  
+  @Setup
+  public void setUp() {
+    double[] coords = BenchmarkData.coords(2, this.dimensions, BenchmarkData.SEED);
+    this.a = new DoublePoint(Arrays.copyOfRange(coords, 0, this.dimensions));
+    this.b = new DoublePoint(Arrays.copyOfRange(coords, this.dimensions, coords.length));
+  }
+  
+  @Benchmark
+  public double distance() {
+    return this.a.distance(this.b);
+  }
+  
+  @Benchmark
+  public double squaredKernel() {
+    return Distance.squared(this.a.getCoords(), this.b.getCoords());
+  }
+}
@@ -0,0 +1,143 @@
+package edu.hawaii.ics621.bench;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import edu.hawaii.ics621.algorithms.MapReduceKMeans;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * Drives the map and combine functions of {@link MapReduceKMeans} directly with in-memory collectors, leaving out
+ * the cost of the framework.
+ * 
+ * @author George Lee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapReduceBenchmark {
+  private static final int POINTS = 4096;
+  private static final int DIMENSIONS = 2;
+  
+  @Param({ "10", "100", "1000" })
+  public int clusters;
+  
+  @Param({ "false", "true" })
+  public boolean combineInMapper;
+  
+  private File centersFile;
+  private File outputDir;
+  private JobConf conf;
+  private PointWritable[] points;
+  private List<PartialSumWritable> partialSums;
+  
+  /**
+   * Collects into a black hole so that the output is not optimized away.
+   */
+  private static class BlackholeCollector<K, V> implements OutputCollector<K, V> {
+    private final Blackhole blackhole;
+    
+    BlackholeCollector(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+    
+    @Override
+    public void collect(K key, V value) {
+      this.blackhole.consume(key);
+      this.blackhole.consume(value);
+    }
+  }
+  
+  @Setup
+  public void setUp() throws IOException {
+    // The mapper loads its centers from a file, like it does from the distributed cache.
+    this.centersFile = File.createTempFile("centers", ".bin");
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(this.centersFile));
+    new Centers(BenchmarkData.coords(this.clusters, DIMENSIONS, BenchmarkData.SEED), DIMENSIONS).write(out);
+    out.close();
+    
+    this.conf = new JobConf();
+    this.conf.set("fs.default.name", "file:///");
+    this.conf.set(Centers.PATH_KEY, this.centersFile.toURI().toString());
+    this.conf.setBoolean(MapReduceKMeans.IN_MAPPER_COMBINE_KEY, this.combineInMapper);
+    
+    // Closing the mapper writes its SSE side file to the work output directory of the task.
+    this.outputDir = File.createTempFile("output", "");
+    this.outputDir.delete();
+    this.outputDir.mkdir();
+    this.conf.set("mapred.work.output.dir", this.outputDir.toURI().toString());
+    
+    double[] coords = BenchmarkData.coords(POINTS, DIMENSIONS, BenchmarkData.SEED + 1);
+    this.points = new PointWritable[POINTS];
+    this.partialSums = new ArrayList<PartialSumWritable>(POINTS);
+    for (int i = 0; i < POINTS; i++) {
+      this.points[i] = new PointWritable();
+      this.points[i].set(coords, i * DIMENSIONS, DIMENSIONS);
+      
+      PartialSumWritable sum = new PartialSumWritable();
+      sum.set(coords, i * DIMENSIONS, DIMENSIONS, 1);
+      this.partialSums.add(sum);
+    }
+  }
+  
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.centersFile.delete();
+    for (File file : this.outputDir.listFiles()) {
+      file.delete();
+    }
+    this.outputDir.delete();
+  }
+  
+  /**
+   * Map a batch of points, including emitting the partial sums when the task closes.
+   */
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public void map(Blackhole blackhole) throws IOException {
+    MapReduceKMeans.Map mapper = new MapReduceKMeans.Map();
+    mapper.configure(this.conf);
+    
+    OutputCollector<IntWritable, PartialSumWritable> output =
+        new BlackholeCollector<IntWritable, PartialSumWritable>(blackhole);
+    for (PointWritable point : this.points) {
+      mapper.map(NullWritable.get(), point, output, Reporter.NULL);
+    }
+    mapper.close();
+  }
+  
+  /**
+   * Combine a batch of partial sums of one point each into a single partial sum.
+   */
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public void combine(Blackhole blackhole) throws IOException {
+    MapReduceKMeans.Combiner combiner = new MapReduceKMeans.Combiner();
+    combiner.reduce(new IntWritable(0), this.partialSums.iterator(),
+        new BlackholeCollector<IntWritable, PartialSumWritable>(blackhole), Reporter.NULL);
+  }
+}
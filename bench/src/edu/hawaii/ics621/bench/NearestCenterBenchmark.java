@@ -0,0 +1,63 @@
+package edu.hawaii.ics621.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import edu.hawaii.ics621.algorithms.NearestCenterIndex;
+
+/**
+ * Measures the search for the nearest center with each index type. Every invocation searches a fixed batch of
+ * points so that the result is the time per point.
+ * 
+ * @author George Lee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NearestCenterBenchmark {
+  private static final int POINTS = 1024;
+  
+  @Param({ "10", "100", "1000" })
+  public int clusters;
+  
+  @Param({ "2", "16" })
+  public int dimensions;
+  
+  @Param({ NearestCenterIndex.BRUTE_FORCE, NearestCenterIndex.KD_TREE })
+  public String index;
+  
+  private NearestCenterIndex centers;
+  private double[][] points;
+  
+  @Setup
+  public void setUp() {
+    double[] coords = BenchmarkData.coords(this.clusters, this.dimensions, BenchmarkData.SEED);
+    this.centers = NearestCenterIndex.create(this.index, coords, this.dimensions);
+    
+    double[] inputs = BenchmarkData.coords(POINTS, this.dimensions, BenchmarkData.SEED + 1);
+    this.points = new double[POINTS][];
+    for (int i = 0; i < POINTS; i++) {
+      this.points[i] = Arrays.copyOfRange(inputs, i * this.dimensions, (i + 1) * this.dimensions);
+    }
+  }
+  
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int nearest() {
+    int sum = 0;
+    for (double[] point : this.points) {
+      sum += this.centers.nearest(point);
+    }
+    
+    return sum;
+  }
+}
@@ -0,0 +1,59 @@
+package edu.hawaii.ics621;
+
+import java.util.List;
+
+/**
+ * A point set stored in one contiguous array, one point after another.
+ * 
+ * @author George Lee
+ *
+ */
+public class ArrayPointSet implements PointSet {
+  private final double[] coords;
+  private final int dimensions;
+  
+  public ArrayPointSet(int size, int dimensions) {
+    this(new double[size * dimensions], dimensions);
+  }
+  
+  public ArrayPointSet(double[] coords, int dimensions) {
+    if (coords.length % dimensions != 0) {
+      throw new IllegalArgumentException(coords.length + " coordinates do not divide into " + dimensions
+          + " dimensions");
+    }
+    
+    this.coords = coords;
+    this.dimensions = dimensions;
+  }
+  
+  public ArrayPointSet(List<DoublePoint> points) {
+    this(points.size(), points.get(0).getDimensions());
+    for (int i = 0; i < points.size(); i++) {
+      this.set(i, points.get(i).getCoords());
+    }
+  }
+  
+  public void set(int index, double... point) {
+    System.arraycopy(point, 0, this.coords, index * this.dimensions, this.dimensions);
+  }
+  
+  @Override
+  public int size() {
+    return this.coords.length / this.dimensions;
+  }
+  
+  @Override
+  public int dimensions() {
+    return this.dimensions;
+  }
+  
+  @Override
+  public double get(int index, int dimension) {
+    return this.coords[index * this.dimensions + dimension];
+  }
+  
+  @Override
+  public void copy(int index, double[] point) {
+    System.arraycopy(this.coords, index * this.dimensions, point, 0, this.dimensions);
+  }
+}
@@ -0,0 +1,70 @@
+package edu.hawaii.ics621;
+
+/**
+ * A point set stored off the heap in direct buffers, one point after another. The heap only holds the buffer
+ * objects, so its size does not depend on the number of points.
+ * 
+ * @author George Lee
+ *
+ */
+public class DirectPointSet implements PointSet {
+  // The number of coordinates copied at once by copyOf.
+  private static final int COPY_BLOCK = 1 << 16;
+  
+  private final DoubleArray coords;
+  private final int size;
+  private final int dimensions;
+  
+  public DirectPointSet(int size, int dimensions) {
+    this.coords = DoubleArray.allocate((long) size * dimensions, true);
+    this.size = size;
+    this.dimensions = dimensions;
+  }
+  
+  /**
+   * @return an off-heap copy of the points.
+   */
+  public static DirectPointSet copyOf(PointSet points) {
+    DirectPointSet copy = new DirectPointSet(points.size(), points.dimensions());
+    int dimensions = points.dimensions();
+    
+    // Copy a block of points at a time so each block is written to the direct buffers in one run.
+    int block = Math.max(1, COPY_BLOCK / dimensions);
+    double[] buffer = new double[block * dimensions];
+    double[] point = new double[dimensions];
+    for (int first = 0; first < points.size(); first += block) {
+      int count = Math.min(block, points.size() - first);
+      for (int i = 0; i < count; i++) {
+        points.copy(first + i, point);
+        System.arraycopy(point, 0, buffer, i * dimensions, dimensions);
+      }
+      copy.coords.set((long) first * dimensions, buffer, 0, count * dimensions);
+    }
+    
+    return copy;
+  }
+  
+  public void set(int index, double... point) {
+    this.coords.set((long) index * this.dimensions, point, 0, this.dimensions);
+  }
+  
+  @Override
+  public int size() {
+    return this.size;
+  }
+  
+  @Override
+  public int dimensions() {
+    return this.dimensions;
+  }
+  
+  @Override
+  public double get(int index, int dimension) {
+    return this.coords.get((long) index * this.dimensions + dimension);
+  }
+  
+  @Override
+  public void copy(int index, double[] point) {
+    this.coords.get((long) index * this.dimensions, point, 0, this.dimensions);
+  }
+}
@@ -0,0 +1,60 @@
+package edu.hawaii.ics621;
+
+/**
+ * Distance kernels over points stored in primitive arrays. The loops are unrolled with independent accumulators
+ * so the JIT can keep several subtractions and multiplies in flight, and callers that only compare distances
+ * use the squared distance to avoid a square root.
+ * 
+ * @author George Lee
+ *
+ */
+public final class Distance {
+  
+  private Distance() {
+  }
+  
+  /**
+   * @return the squared Euclidean distance between the points stored at the given offsets.
+   */
+  public static double squared(double[] a, int aOffset, double[] b, int bOffset, int dimensions) {
+    double sum0 = 0;
+    double sum1 = 0;
+    double sum2 = 0;
+    double sum3 = 0;
+    int d = 0;
+    
+    for (; d + 3 < dimensions; d += 4) {
+      double diff0 = a[aOffset + d] - b[bOffset + d];
+      double diff1 = a[aOffset + d + 1] - b[bOffset + d + 1];
+      double diff2 = a[aOffset + d + 2] - b[bOffset + d + 2];
+      double diff3 = a[aOffset + d + 3] - b[bOffset + d + 3];
+      sum0 += diff0 * diff0;
+      sum1 += diff1 * diff1;
+      sum2 += diff2 * diff2;
+      sum3 += diff3 * diff3;
+    }
+    
+    for (; d < dimensions; d++) {
+      double diff = a[aOffset + d] - b[bOffset + d];
+      sum0 += diff * diff;
+    }
+    
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+  
+  /**
+   * @return the squared Euclidean distance between two points of the same dimensions.
+   */
+  public static double squared(double[] a, double[] b) {
+    return squared(a, 0, b, 0, a.length);
+  }
+  
+  /**
+   * Add the point stored at the offset to the sums stored at another offset.
+   */
+  public static void add(double[] sums, int sumOffset, double[] point, int pointOffset, int dimensions) {
+    for (int d = 0; d < dimensions; d++) {
+      sums[sumOffset + d] += point[pointOffset + d];
+    }
+  }
+}
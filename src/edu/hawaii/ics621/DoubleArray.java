@@ -0,0 +1,165 @@
+package edu.hawaii.ics621;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * An array of doubles with a long index, stored either on the heap or off the heap in direct buffers. Off-heap
+ * arrays are not limited by the maximum size of a Java array and are not scanned by the garbage collector; their
+ * memory is released when the array is collected.
+ * 
+ * @author George Lee
+ *
+ */
+public abstract class DoubleArray {
+  
+  /**
+   * Off-heap arrays are split into direct buffers of this many elements, a power of two so that an index is split
+   * with a shift and a mask.
+   */
+  static final int SEGMENT_SHIFT = 27;
+  static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+  
+  public static DoubleArray allocate(long length, boolean offHeap) {
+    if (offHeap) {
+      return new Direct(length);
+    }
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(length + " elements do not fit in a Java array; use off-heap storage");
+    }
+    
+    return new Heap((int) length);
+  }
+  
+  public abstract long length();
+  
+  public abstract double get(long index);
+  
+  public abstract void set(long index, double value);
+  
+  public abstract void fill(double value);
+  
+  /**
+   * Copy length elements starting at index into an array.
+   */
+  public abstract void get(long index, double[] target, int offset, int length);
+  
+  /**
+   * Copy length elements of an array into this array starting at index.
+   */
+  public abstract void set(long index, double[] source, int offset, int length);
+  
+  private static class Heap extends DoubleArray {
+    private final double[] values;
+    
+    Heap(int length) {
+      this.values = new double[length];
+    }
+    
+    @Override
+    public long length() {
+      return this.values.length;
+    }
+    
+    @Override
+    public double get(long index) {
+      return this.values[(int) index];
+    }
+    
+    @Override
+    public void set(long index, double value) {
+      this.values[(int) index] = value;
+    }
+    
+    @Override
+    public void fill(double value) {
+      Arrays.fill(this.values, value);
+    }
+    
+    @Override
+    public void get(long index, double[] target, int offset, int length) {
+      System.arraycopy(this.values, (int) index, target, offset, length);
+    }
+    
+    @Override
+    public void set(long index, double[] source, int offset, int length) {
+      System.arraycopy(source, offset, this.values, (int) index, length);
+    }
+  }
+  
+  private static class Direct extends DoubleArray {
+    private final DoubleBuffer[] segments;
+    private final long length;
+    
+    Direct(long length) {
+      this.length = length;
+      this.segments = new DoubleBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+      for (int i = 0; i < this.segments.length; i++) {
+        long size = Math.min(SEGMENT_MASK + 1, length - ((long) i << SEGMENT_SHIFT));
+        this.segments[i] = ByteBuffer.allocateDirect((int) size * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+      }
+    }
+    
+    @Override
+    public long length() {
+      return this.length;
+    }
+    
+    @Override
+    public double get(long index) {
+      return this.segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+    
+    @Override
+    public void set(long index, double value) {
+      this.segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+    
+    @Override
+    public void fill(double value) {
+      for (DoubleBuffer segment : this.segments) {
+        for (int i = 0; i < segment.capacity(); i++) {
+          segment.put(i, value);
+        }
+      }
+    }
+    
+    /**
+     * Resolves the segment once per run of elements rather than once per element. A run only crosses into the
+     * next segment when the segment size is not a multiple of its length.
+     */
+    @Override
+    public void get(long index, double[] target, int offset, int length) {
+      while (length > 0) {
+        DoubleBuffer segment = this.segments[(int) (index >>> SEGMENT_SHIFT)];
+        int start = (int) (index & SEGMENT_MASK);
+        int count = Math.min(length, segment.capacity() - start);
+        for (int i = 0; i < count; i++) {
+          target[offset + i] = segment.get(start + i);
+        }
+        
+        index += count;
+        offset += count;
+        length -= count;
+      }
+    }
+    
+    @Override
+    public void set(long index, double[] source, int offset, int length) {
+      while (length > 0) {
+        DoubleBuffer segment = this.segments[(int) (index >>> SEGMENT_SHIFT)];
+        int start = (int) (index & SEGMENT_MASK);
+        int count = Math.min(length, segment.capacity() - start);
+        for (int i = 0; i < count; i++) {
+          segment.put(start + i, source[offset + i]);
+        }
+        
+        index += count;
+        offset += count;
+        length -= count;
+      }
+    }
+  }
+}
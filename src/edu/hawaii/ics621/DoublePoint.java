@@ -3,44 +3,93 @@ package edu.hawaii.ics621;
 import java.util.Collection;
 
 public class DoublePoint {
-  private double x;
-  private double y;
+  private final double[] coords;
   
   public DoublePoint(double x, double y) {
-    this.x = x;
-    this.y = y;
+    this.coords = new double[] {x, y};
+  }
+  
+  public DoublePoint(double[] coords) {
+    this.coords = coords;
+  }
+  
+  public int getDimensions() {
+    return this.coords.length;
+  }
+  
+  public double get(int dimension) {
+    return this.coords[dimension];
   }
   
   public double getX() {
-    return this.x;
+    return this.coords[0];
   }
   
   public double getY() {
-    return this.y;
+    return this.coords[1];
+  }
+  
+  /**
+   * @return the coordinates backing this point.
+   */
+  public double[] getCoords() {
+    return this.coords;
   }
   
   public double distance(DoublePoint point) {
-    double dx = this.getX() - point.getX();
-    dx *= dx;
-    
-    double dy = this.getY() - point.getY();
-    dy *= dy;
-    
-    return Math.sqrt(dx + dy);
+    return Math.sqrt(this.squaredDistance(point));
+  }
+  
+  public double squaredDistance(DoublePoint point) {
+    return Distance.squared(this.coords, point.coords);
   }
   
   public static DoublePoint average(Collection<DoublePoint> points) {
-    double x = 0;
-    double y = 0;
+    if (points.isEmpty()) {
+      throw new IllegalArgumentException("Cannot average an empty collection of points");
+    }
+    
+    double[] sums = new double[points.iterator().next().getDimensions()];
     for (DoublePoint point : points) {
-      x += point.getX();
-      y += point.getY();
+      Distance.add(sums, 0, point.coords, 0, sums.length);
+    }
+    
+    for (int d = 0; d < sums.length; d++) {
+      sums[d] /= points.size();
+    }
+    
+    return new DoublePoint(sums);
+  }
+  
+  /**
+   * Parse a point in the format x,y,...
+   */
+  public static DoublePoint parse(String line) {
+    String[] values = line.split(",");
+    double[] coords = new double[values.length];
+    for (int d = 0; d < values.length; d++) {
+      coords[d] = Double.parseDouble(values[d]);
+    }
+    
+    return new DoublePoint(coords);
+  }
+  
+  /**
+   * @return the point in the format x,y,... read by {@link #parse(String)}.
+   */
+  public String format() {
+    StringBuilder builder = new StringBuilder();
+    for (int d = 0; d < this.coords.length; d++) {
+      if (d > 0) {
+        builder.append(',');
+      }
+      builder.append(this.coords[d]);
     }
     
-    return new DoublePoint(x / points.size(), y / points.size());
+    return builder.toString();
   }
   
   public String toString() {
-    return "(" + this.x + "," + this.y + ")";
+    return "(" + this.format() + ")";
   }
 }
@@ -0,0 +1,109 @@
+package edu.hawaii.ics621;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An array of ints with a long index, stored either on the heap or off the heap in direct buffers. Off-heap
+ * arrays are not limited by the maximum size of a Java array and are not scanned by the garbage collector; their
+ * memory is released when the array is collected.
+ * 
+ * @author George Lee
+ *
+ */
+public abstract class IntArray {
+  
+  /**
+   * Off-heap arrays are split into direct buffers of this many elements, a power of two so that an index is split
+   * with a shift and a mask.
+   */
+  static final int SEGMENT_SHIFT = 28;
+  static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+  
+  public static IntArray allocate(long length, boolean offHeap) {
+    if (offHeap) {
+      return new Direct(length);
+    }
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(length + " elements do not fit in a Java array; use off-heap storage");
+    }
+    
+    return new Heap((int) length);
+  }
+  
+  public abstract long length();
+  
+  public abstract int get(long index);
+  
+  public abstract void set(long index, int value);
+  
+  public abstract void fill(int value);
+  
+  private static class Heap extends IntArray {
+    private final int[] values;
+    
+    Heap(int length) {
+      this.values = new int[length];
+    }
+    
+    @Override
+    public long length() {
+      return this.values.length;
+    }
+    
+    @Override
+    public int get(long index) {
+      return this.values[(int) index];
+    }
+    
+    @Override
+    public void set(long index, int value) {
+      this.values[(int) index] = value;
+    }
+    
+    @Override
+    public void fill(int value) {
+      Arrays.fill(this.values, value);
+    }
+  }
+  
+  private static class Direct extends IntArray {
+    private final IntBuffer[] segments;
+    private final long length;
+    
+    Direct(long length) {
+      this.length = length;
+      this.segments = new IntBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+      for (int i = 0; i < this.segments.length; i++) {
+        long size = Math.min(SEGMENT_MASK + 1, length - ((long) i << SEGMENT_SHIFT));
+        this.segments[i] = ByteBuffer.allocateDirect((int) size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+      }
+    }
+    
+    @Override
+    public long length() {
+      return this.length;
+    }
+    
+    @Override
+    public int get(long index) {
+      return this.segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+    
+    @Override
+    public void set(long index, int value) {
+      this.segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+    
+    @Override
+    public void fill(int value) {
+      for (IntBuffer segment : this.segments) {
+        for (int i = 0; i < segment.capacity(); i++) {
+          segment.put(i, value);
+        }
+      }
+    }
+  }
+}
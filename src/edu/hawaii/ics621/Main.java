@@ -17,7 +17,7 @@ public class Main {
     List<DoublePoint> inputs = new ArrayList<DoublePoint>();
     Random generator = new Random();
     
-    for (int i = 0; i < 100; i++) {
+    for (int i = 0; i < INPUT_SIZE; i++) {
       inputs.add(new DoublePoint(generator.nextDouble(), generator.nextDouble()));
     }
     
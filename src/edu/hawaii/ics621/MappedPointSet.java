@@ -0,0 +1,168 @@
+package edu.hawaii.ics621;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A point set read straight from a memory-mapped binary file, so that points are paged in from disk as they are
+ * used instead of being parsed onto the heap. The file starts with a 16 byte header holding the number of points
+ * as a long and the number of dimensions as an int, followed by the coordinates one point after another. Everything
+ * is little-endian. Files over 2 GB are mapped in several segments, each holding a whole number of points.
+ * 
+ * @author George Lee
+ *
+ */
+public class MappedPointSet implements PointSet {
+  static final int HEADER_SIZE = 16;
+  
+  /**
+   * The largest segment that can be mapped at once.
+   */
+  private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+  
+  private final DoubleBuffer[] segments;
+  private final int size;
+  private final int dimensions;
+  private final int pointsPerSegment;
+  
+  /**
+   * Map a file written by {@link Writer}.
+   */
+  public MappedPointSet(File file) throws IOException {
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = input.getChannel();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          throw new IOException(file + " is too short to hold a point file header");
+        }
+      }
+      
+      long size = header.getLong(0);
+      this.dimensions = header.getInt(8);
+      // A point must fit in one segment, or no segment could hold a whole point.
+      if (size < 0 || size > Integer.MAX_VALUE || this.dimensions <= 0
+          || (long) this.dimensions * 8 > MAX_SEGMENT_SIZE) {
+        throw new IOException(file + " has a corrupt header: " + size + " points of " + this.dimensions
+            + " dimensions");
+      }
+      
+      // Divide rather than multiply so a corrupt header cannot overflow the check.
+      if (size > (channel.size() - HEADER_SIZE) / 8 / this.dimensions) {
+        throw new IOException(file + " does not hold " + size + " points of " + this.dimensions + " dimensions");
+      }
+      this.size = (int) size;
+      
+      long pointBytes = this.dimensions * 8L;
+      this.pointsPerSegment = (int) Math.min(MAX_SEGMENT_SIZE / pointBytes, Math.max(1, this.size));
+      this.segments = new DoubleBuffer[(this.size + this.pointsPerSegment - 1) / this.pointsPerSegment];
+      for (int i = 0; i < this.segments.length; i++) {
+        long first = (long) i * this.pointsPerSegment;
+        long points = Math.min(this.pointsPerSegment, this.size - first);
+        this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * pointBytes,
+            points * pointBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+      }
+    } finally {
+      // The mappings stay valid after the file is closed.
+      input.close();
+    }
+  }
+  
+  @Override
+  public int size() {
+    return this.size;
+  }
+  
+  @Override
+  public int dimensions() {
+    return this.dimensions;
+  }
+  
+  @Override
+  public double get(int index, int dimension) {
+    DoubleBuffer segment = this.segments[index / this.pointsPerSegment];
+    return segment.get((index % this.pointsPerSegment) * this.dimensions + dimension);
+  }
+  
+  /**
+   * Uses absolute reads only, so several threads can copy points at once.
+   */
+  @Override
+  public void copy(int index, double[] point) {
+    DoubleBuffer segment = this.segments[index / this.pointsPerSegment];
+    int offset = (index % this.pointsPerSegment) * this.dimensions;
+    for (int d = 0; d < this.dimensions; d++) {
+      point[d] = segment.get(offset + d);
+    }
+  }
+  
+  /**
+   * Writes points to a file that can be mapped by {@link MappedPointSet}. The number of points is filled in when
+   * the writer is closed.
+   */
+  public static class Writer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final RandomAccessFile output;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int dimensions;
+    private long size;
+    
+    public Writer(File file, int dimensions) throws IOException {
+      this.output = new RandomAccessFile(file, "rw");
+      this.output.setLength(0);
+      this.channel = this.output.getChannel();
+      this.dimensions = dimensions;
+      this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, dimensions * 8)).order(ByteOrder.LITTLE_ENDIAN);
+      
+      // Leave room for the header.
+      this.channel.position(HEADER_SIZE);
+    }
+    
+    public void add(double[] point) throws IOException {
+      if (this.buffer.remaining() < this.dimensions * 8) {
+        this.flush();
+      }
+      
+      for (int d = 0; d < this.dimensions; d++) {
+        this.buffer.putDouble(point[d]);
+      }
+      this.size++;
+    }
+    
+    public void addAll(PointSet points) throws IOException {
+      double[] point = new double[this.dimensions];
+      for (int i = 0; i < points.size(); i++) {
+        points.copy(i, point);
+        this.add(point);
+      }
+    }
+    
+    public void close() throws IOException {
+      this.flush();
+      
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putLong(this.size).putInt(this.dimensions).putInt(0).flip();
+      while (header.hasRemaining()) {
+        this.channel.write(header, header.position());
+      }
+      
+      this.output.close();
+    }
+    
+    private void flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package edu.hawaii.ics621;
+
+/**
+ * A read-only set of points addressed by index. Implementations store the coordinates in primitive form so that
+ * clustering does not need an object per point.
+ * 
+ * @author George Lee
+ *
+ */
+public interface PointSet {
+  
+  /**
+   * @return the number of points in the set.
+   */
+  int size();
+  
+  /**
+   * @return the number of coordinates of each point.
+   */
+  int dimensions();
+  
+  double get(int index, int dimension);
+  
+  /**
+   * Copy the coordinates of a point into the start of an array.
+   */
+  void copy(int index, double[] point);
+}
@@ -0,0 +1,62 @@
+package edu.hawaii.ics621;
+
+import java.util.Random;
+
+/**
+ * A view of some of the points of another point set, addressed by their indexes in that set. The indexes are kept
+ * in increasing order so that the underlying points are read front to back.
+ * 
+ * @author George Lee
+ *
+ */
+public class SampledPointSet implements PointSet {
+  private final PointSet points;
+  private final int[] indexes;
+  
+  public SampledPointSet(PointSet points, int[] indexes) {
+    this.points = points;
+    this.indexes = indexes;
+  }
+  
+  /**
+   * Pick size of the points uniformly at random without replacement.
+   */
+  public static SampledPointSet random(PointSet points, int size, Random generator) {
+    int n = points.size();
+    if (size > n) {
+      throw new IllegalArgumentException("Cannot sample " + size + " of " + n + " points");
+    }
+    
+    // Selection sampling: keep each point with the probability that the rest of the sample fits in the rest of
+    // the points, which picks the indexes already in order.
+    int[] indexes = new int[size];
+    int chosen = 0;
+    for (int i = 0; i < n && chosen < size; i++) {
+      if (generator.nextInt(n - i) < size - chosen) {
+        indexes[chosen++] = i;
+      }
+    }
+    
+    return new SampledPointSet(points, indexes);
+  }
+  
+  @Override
+  public int size() {
+    return this.indexes.length;
+  }
+  
+  @Override
+  public int dimensions() {
+    return this.points.dimensions();
+  }
+  
+  @Override
+  public double get(int index, int dimension) {
+    return this.points.get(this.indexes[index], dimension);
+  }
+  
+  @Override
+  public void copy(int index, double[] point) {
+    this.points.copy(this.indexes[index], point);
+  }
+}
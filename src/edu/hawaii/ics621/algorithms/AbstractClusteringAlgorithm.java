@@ -3,34 +3,163 @@ package edu.hawaii.ics621.algorithms;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import edu.hawaii.ics621.ArrayPointSet;
 import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.PointSet;
+import edu.hawaii.ics621.SampledPointSet;
 
 public abstract class AbstractClusteringAlgorithm {
   protected static final int MAX_ITERATIONS = 1000;
   protected static final double EPSILON = 1E-8;
   
+  protected final Random generator = new Random();
+  protected MetricsListener listener;
+  protected boolean offHeap;
+  
+  // The fraction of the inputs clustered first and how much it grows, or 1 to cluster all of them from the start.
+  private double sampleFraction = 1;
+  private double sampleGrowth = 2;
+  
+  /**
+   * Seed the random choices made while clustering so that runs can be reproduced.
+   */
+  public void setSeed(long seed) {
+    this.generator.setSeed(seed);
+  }
+  
+  /**
+   * Report the metrics of each iteration to a listener, or to no one if the listener is null.
+   */
+  public void setMetricsListener(MetricsListener listener) {
+    this.listener = listener;
+  }
+  
+  /**
+   * Keep the state kept for every point, such as assignments and bounds, off the heap. Use with an off-heap
+   * {@link edu.hawaii.ics621.DirectPointSet} or {@link edu.hawaii.ics621.MappedPointSet} to cluster more points than
+   * the heap can hold.
+   */
+  public void setOffHeap(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+  
+  /**
+   * Cluster random samples of the inputs before clustering all of them. The first sample holds the given
+   * fraction of the inputs and every later sample is growth times larger, until a sample would hold all of the
+   * inputs. Each sample starts from the clusters found for the previous one, so the passes over every input only
+   * have to make the final adjustments. Samples with fewer points than clusters are skipped.
+   * 
+   * @param fraction The fraction of the inputs in the first sample, or 1 to turn sampling off.
+   * @param growth How many times larger each sample is than the previous one.
+   */
+  public void setProgressive(double fraction, double growth) {
+    if (fraction <= 0 || fraction > 1 || growth <= 1) {
+      throw new IllegalArgumentException("A fraction in (0, 1] and a growth above 1 expected instead of "
+          + fraction + " and " + growth);
+    }
+    
+    this.sampleFraction = fraction;
+    this.sampleGrowth = growth;
+  }
+  
   public List<DoublePoint> cluster(List<DoublePoint> inputs, int numClusters) {
+    if (inputs.isEmpty()) {
+      throw new IllegalArgumentException("There are no inputs to cluster");
+    }
+    
+    return this.cluster(new ArrayPointSet(inputs), numClusters);
+  }
+  
+  public List<DoublePoint> cluster(PointSet inputs, int numClusters) {
+    if (inputs.size() == 0) {
+      throw new IllegalArgumentException("There are no inputs to cluster");
+    }
+    
     List<DoublePoint> clusters = this.initialClusters(inputs, numClusters);
+    
+    // Refine the clusters on growing samples first.
+    for (double fraction = this.sampleFraction; fraction < 1; fraction *= this.sampleGrowth) {
+      int size = (int) (fraction * inputs.size());
+      if (size >= numClusters) {
+        clusters = this.clusterInputs(SampledPointSet.random(inputs, size, this.generator), clusters);
+      }
+    }
+    
     // Use these clusters to cluster the inputs.
     return this.clusterInputs(inputs, clusters);
   }
   
-  private List<DoublePoint> initialClusters(List<DoublePoint> inputs, int clusters) {
-    List<DoublePoint> initClusters = new ArrayList<DoublePoint>();
-    
-    // In this simple implementation, we'll just pick random inputs for our initial clusters.
-    Random generator = new Random();
-    for (int i = 0; i < clusters; i++) {
-      DoublePoint item = inputs.get(generator.nextInt(inputs.size()));
-      while (initClusters.contains(item)) {
-        item = inputs.get(generator.nextInt(inputs.size()));
+  /**
+   * Pick the initial clusters with k-means++.
+   */
+  protected List<DoublePoint> initialClusters(PointSet inputs, int clusters) {
+    return toPoints(Seeding.plusPlus(inputs, null, clusters, this.generator, this.offHeap), inputs.dimensions());
+  }
+  
+  protected abstract List<DoublePoint> clusterInputs(PointSet inputs, List<DoublePoint> clusters);
+  
+  /**
+   * Move each cluster to the average of the points summed for it. A cluster that lost all of its points stays
+   * where it was.
+   * 
+   * @return true if any cluster moved more than EPSILON.
+   */
+  protected static boolean moveCenters(double[] centers, double[] sums, long[] counts, int dimensions) {
+    boolean changed = false;
+    for (int j = 0; j < counts.length; j++) {
+      if (counts[j] == 0) {
+        continue;
+      }
+      
+      int offset = j * dimensions;
+      double delta = 0;
+      for (int d = 0; d < dimensions; d++) {
+        double diff = centers[offset + d] - sums[offset + d] / counts[j];
+        delta += diff * diff;
+      }
+      
+      if (delta > EPSILON * EPSILON) {
+        changed = true;
       }
       
-      initClusters.add(item);
+      for (int d = 0; d < dimensions; d++) {
+        centers[offset + d] = sums[offset + d] / counts[j];
+      }
+    }
+    
+    return changed;
+  }
+  
+  /**
+   * @return a copy of one of the inputs.
+   */
+  protected static DoublePoint toPoint(PointSet inputs, int index) {
+    double[] coords = new double[inputs.dimensions()];
+    inputs.copy(index, coords);
+    return new DoublePoint(coords);
+  }
+  
+  /**
+   * @return the clusters stored one after another in a single array.
+   */
+  protected static double[] toCoords(List<DoublePoint> points) {
+    int dimensions = points.get(0).getDimensions();
+    double[] coords = new double[points.size() * dimensions];
+    for (int i = 0; i < points.size(); i++) {
+      System.arraycopy(points.get(i).getCoords(), 0, coords, i * dimensions, dimensions);
     }
     
-    return initClusters;
+    return coords;
   }
   
-  protected abstract List<DoublePoint> clusterInputs(List<DoublePoint> inputs, List<DoublePoint> clusters);
+  protected static List<DoublePoint> toPoints(double[] coords, int dimensions) {
+    List<DoublePoint> points = new ArrayList<DoublePoint>(coords.length / dimensions);
+    for (int i = 0; i < coords.length / dimensions; i++) {
+      double[] point = new double[dimensions];
+      System.arraycopy(coords, i * dimensions, point, 0, dimensions);
+      points.add(new DoublePoint(point));
+    }
+    
+    return points;
+  }
 }
@@ -0,0 +1,370 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.io.BoundsWritable;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * MapReduce K-Means that carries Hamerly's bounds from one iteration to the next, like {@link HamerlyKMeans}.
+ * Besides the partial sums, each mapper writes every point with its cluster and bounds to a side file named
+ * points-TASK, and the next iteration reads those files instead of the input. The centers of the previous
+ * iteration are sent along with the current ones so the mappers can loosen the bounds by how far each center
+ * moved, and only compute distances for the points whose bounds no longer rule out a change of cluster. Half the
+ * distance from each center to its nearest other center is computed by the driver and sent with the centers.
+ * 
+ * Rewriting the points costs a write of the whole input per iteration, so this pays off when computing the
+ * distances costs more than reading and writing the points, as with many clusters. The points of an iteration are
+ * deleted once the next iteration has read them.
+ * 
+ * @author George Lee
+ *
+ */
+public class BoundedMapReduceKMeans extends Configured implements Tool {
+  static final String PREVIOUS_PATH_KEY = "kmeans.centers.previous.path";
+  static final String HALF_NEAREST_PATH_KEY = "kmeans.centers.half.path";
+  static final String POINTS_PREFIX = "points-";
+  
+  private MapReduceKMeans.IterationListener listener;
+  
+  /**
+   * Assigns each point with the help of its bounds, sums the points of each cluster in the mapper and writes the
+   * points back with their new bounds.
+   */
+  public static class BoundedMap extends MapReduceBase
+      implements Mapper<Writable, Writable, IntWritable, PartialSumWritable> {
+    
+    private JobConf conf;
+    private double[] centers;
+    private int dimensions;
+    private double[] drifts;
+    private double maxDrift;
+    private double[] halfNearest;
+    
+    private double[] sums;
+    private long[] counts;
+    private OutputCollector<IntWritable, PartialSumWritable> output;
+    private final IntWritable outKey = new IntWritable();
+    private final PartialSumWritable outValue = new PartialSumWritable();
+    
+    private SequenceFile.Writer points;
+    private final BoundsWritable bounds = new BoundsWritable();
+    
+    // The assignment of the current point.
+    private int cluster;
+    private double upper;
+    private double lower;
+    
+    private Reporter reporter;
+    private long pointCount;
+    private long distances;
+    
+    /**
+     * Get the current and previous centers from the distributed cache.
+     */
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+      
+      Centers current;
+      Centers previous = null;
+      try {
+        current = Centers.load(conf);
+        this.halfNearest = Centers.load(conf, HALF_NEAREST_PATH_KEY).getCoords();
+        if (conf.get(PREVIOUS_PATH_KEY) != null) {
+          previous = Centers.load(conf, PREVIOUS_PATH_KEY);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Could not load the centers", e);
+      }
+      
+      int k = current.size();
+      this.centers = current.getCoords();
+      this.dimensions = current.dimensions();
+      this.sums = new double[this.centers.length];
+      this.counts = new long[k];
+      
+      this.drifts = new double[k];
+      if (previous != null) {
+        for (int j = 0; j < k; j++) {
+          this.drifts[j] = Math.sqrt(Distance.squared(previous.getCoords(), j * this.dimensions, this.centers,
+              j * this.dimensions, this.dimensions));
+          this.maxDrift = Math.max(this.maxDrift, this.drifts[j]);
+        }
+      }
+    }
+    
+    /**
+     * The first iteration reads points without bounds from the input. Later iterations read each point as the key
+     * and its bounds from the previous iteration as the value.
+     */
+    @Override
+    public void map(Writable key, Writable value, OutputCollector<IntWritable, PartialSumWritable> output,
+        Reporter reporter) throws IOException {
+      this.output = output;
+      this.reporter = reporter;
+      this.pointCount++;
+      
+      PointWritable input;
+      if (value instanceof BoundsWritable) {
+        input = (PointWritable) key;
+        BoundsWritable previous = (BoundsWritable) value;
+        this.cluster = previous.getCluster();
+        this.upper = previous.getUpper() + this.drifts[this.cluster];
+        this.lower = previous.getLower() - this.maxDrift;
+      } else {
+        input = (PointWritable) value;
+        this.cluster = -1;
+      }
+      
+      double[] point = input.getCoords();
+      if (this.cluster < 0) {
+        this.assign(point);
+      } else {
+        double bound = Math.max(this.halfNearest[this.cluster], this.lower);
+        if (this.upper >= bound) {
+          // Tighten the upper bound and check again before comparing against every center.
+          this.upper = Math.sqrt(Distance.squared(point, 0, this.centers, this.cluster * this.dimensions,
+              this.dimensions));
+          this.distances++;
+          if (this.upper >= bound) {
+            this.assign(point);
+          }
+        }
+      }
+      
+      Distance.add(this.sums, this.cluster * this.dimensions, point, 0, this.dimensions);
+      this.counts[this.cluster]++;
+      
+      if (this.points == null) {
+        Path path = new Path(FileOutputFormat.getWorkOutputPath(this.conf),
+            String.format(POINTS_PREFIX + "%05d", this.conf.getInt("mapred.task.partition", 0)));
+        this.points = SequenceFile.createWriter(path.getFileSystem(this.conf), this.conf, path,
+            PointWritable.class, BoundsWritable.class);
+      }
+      this.bounds.set(this.cluster, this.upper, this.lower);
+      this.points.append(input, this.bounds);
+    }
+    
+    /**
+     * Compare the point against every center to find its nearest center and reset its bounds.
+     */
+    private void assign(double[] point) {
+      double nearest = Double.MAX_VALUE;
+      double second = Double.MAX_VALUE;
+      int nearestIndex = 0;
+      
+      // Compare squared distances so ties resolve exactly as they do in KMeans.
+      for (int j = 0; j < this.counts.length; j++) {
+        double dist = Distance.squared(point, 0, this.centers, j * this.dimensions, this.dimensions);
+        if (dist < nearest) {
+          second = nearest;
+          nearest = dist;
+          nearestIndex = j;
+        } else if (dist < second) {
+          second = dist;
+        }
+      }
+      
+      this.distances += this.counts.length;
+      this.cluster = nearestIndex;
+      this.upper = Math.sqrt(nearest);
+      this.lower = Math.sqrt(second);
+    }
+    
+    /**
+     * Emit one partial sum per cluster and close the points.
+     */
+    @Override
+    public void close() throws IOException {
+      if (this.output != null) {
+        for (int i = 0; i < this.counts.length; i++) {
+          if (this.counts[i] > 0) {
+            this.outKey.set(i);
+            this.outValue.set(this.sums, i * this.dimensions, this.dimensions, this.counts[i]);
+            this.output.collect(this.outKey, this.outValue);
+          }
+        }
+        
+        this.points.close();
+        this.reporter.incrCounter(MapReduceKMeans.Counter.POINTS, this.pointCount);
+        this.reporter.incrCounter(MapReduceKMeans.Counter.DISTANCES, this.distances);
+        this.reporter.incrCounter(MapReduceKMeans.Counter.DISTANCES_SKIPPED, this.pointCount * this.counts.length
+            - this.distances);
+      }
+      super.close();
+    }
+  }
+  
+  /**
+   * @return half the distance from each center to its nearest other center. Comparing every pair of centers is
+   * done once per iteration here rather than once in every map task.
+   */
+  static double[] halfNearest(List<DoublePoint> centers) {
+    double[] coords = AbstractClusteringAlgorithm.toCoords(centers);
+    int k = centers.size();
+    int dimensions = coords.length / k;
+    double[] nearest = new double[k];
+    Arrays.fill(nearest, Double.MAX_VALUE);
+    for (int j = 0; j < k; j++) {
+      for (int other = j + 1; other < k; other++) {
+        double dist = Distance.squared(coords, j * dimensions, coords, other * dimensions, dimensions);
+        nearest[j] = Math.min(nearest[j], dist);
+        nearest[other] = Math.min(nearest[other], dist);
+      }
+    }
+    
+    for (int j = 0; j < k; j++) {
+      nearest[j] = Math.sqrt(nearest[j]) / 2;
+    }
+    return nearest;
+  }
+  
+  static int printUsage() {
+    System.out.println("BoundedMapReduceKMeans <inputs> <clusters> <output>");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  public void setIterationListener(MapReduceKMeans.IterationListener listener) {
+    this.listener = listener;
+  }
+  
+  private RunningJob createJob(String jobName, String inputPath, boolean bounded, List<DoublePoint> centers,
+      Path centersPath, Path previousPath, String outputPath, int numMappers, int numReducers) throws Exception {
+    JobConf conf = new JobConf(getConf(), BoundedMapReduceKMeans.class);
+    
+    conf.setJobName(jobName);
+    
+    if (bounded) {
+      conf.setInputFormat(SequenceFileInputFormat.class);
+      FileInputFormat.setInputPaths(conf, new Path(inputPath, POINTS_PREFIX + "*"));
+    } else {
+      MapReduceKMeans.setInput(conf, inputPath);
+    }
+    conf.setMapOutputValueClass(PartialSumWritable.class);
+    conf.setOutputKeyClass(IntWritable.class);
+    conf.setOutputValueClass(Text.class);
+    
+    // The mapper always combines its own output, since it has to see every point to write it back anyway.
+    conf.setMapperClass(BoundedMap.class);
+    conf.setReducerClass(MapReduceKMeans.Reduce.class);
+    conf.setPartitionerClass(MapReduceKMeans.ClusterPartitioner.class);
+    conf.setInt(MapReduceKMeans.CLUSTERS_KEY, centers.size());
+    
+    conf.setNumMapTasks(numMappers);
+    conf.setNumReduceTasks(numReducers);
+    FileOutputFormat.setOutputPath(conf, new Path(outputPath));
+    
+    // Send the centers of the previous iteration along to measure how far each center moved.
+    new Centers(centers).share(conf, centersPath);
+    new Centers(halfNearest(centers), 1).share(conf, new Path(centersPath.getParent(), "half-"
+        + centersPath.getName()), HALF_NEAREST_PATH_KEY);
+    if (previousPath != null) {
+      DistributedCache.addCacheFile(previousPath.toUri(), conf);
+      conf.set(PREVIOUS_PATH_KEY, previousPath.toString());
+    }
+    
+    return JobClient.runJob(conf);
+  }
+  
+  /**
+   * Runs one job per Lloyd iteration until no center moves more than EPSILON or the maximum number of iterations
+   * is reached. Each iteration after the first reads the points written by the one before it.
+   * 
+   * @return the final centers.
+   */
+  public List<DoublePoint> runIterations(String jobName, String dataPath, String clusterPath, String outputPath,
+      int numMappers, int numReducers) throws Exception {
+    int maxIterations = getConf().getInt(MapReduceKMeans.MAX_ITERATIONS_KEY,
+        AbstractClusteringAlgorithm.MAX_ITERATIONS);
+    FileSystem fs = FileSystem.get(getConf());
+    List<DoublePoint> centers = MapReduceKMeans.readCenters(fs, new Path(clusterPath));
+    String inputPath = dataPath;
+    Path previousPath = null;
+    long moved = 1;
+    int iterations = 0;
+    
+    long start = System.currentTimeMillis();
+    while (moved > 0 && iterations < maxIterations) {
+      String iterationPath = outputPath + "/iteration-" + iterations;
+      Path centersPath = new Path(outputPath, "centers-" + iterations + ".bin");
+      
+      long iterationStart = System.currentTimeMillis();
+      RunningJob job = this.createJob(jobName + "-" + iterations, inputPath, iterations > 0, centers, centersPath,
+          previousPath, iterationPath, numMappers, numReducers);
+      long iterationEnd = System.currentTimeMillis();
+      
+      moved = job.getCounters().getCounter(MapReduceKMeans.Counter.CENTERS_MOVED);
+      long distances = job.getCounters().getCounter(MapReduceKMeans.Counter.DISTANCES);
+      System.out.println(jobName + " iteration " + iterations + " took " + (iterationEnd - iterationStart)
+          + " ms, " + moved + " centers moved, " + distances + " distances computed");
+      if (this.listener != null) {
+        this.listener.iterationFinished(iterations, job, iterationEnd - iterationStart);
+      }
+      
+      // The points of the previous iteration have been rewritten with new bounds.
+      if (iterations > 0) {
+        for (Path file : MapReduceKMeans.listFiles(fs, new Path(inputPath), POINTS_PREFIX)) {
+          fs.delete(file, false);
+        }
+      }
+      
+      centers = MapReduceKMeans.readCenters(fs, new Path(iterationPath), centers);
+      inputPath = iterationPath;
+      previousPath = centersPath;
+      iterations++;
+    }
+    long end = System.currentTimeMillis();
+    
+    System.out.println(jobName + " took " + ((end - start) / 1000) + " seconds over " + iterations + " iterations");
+    return centers;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 3.");
+      return printUsage();
+    }
+    
+    String outputPath = args[2];
+    List<DoublePoint> centers = this.runIterations("kmeans-bounded", args[0], args[1], outputPath,
+        getConf().getInt("mapred.map.tasks", 1), getConf().getInt("mapred.reduce.tasks", 1));
+    MapReduceKMeans.writeCenters(FileSystem.get(getConf()), new Path(outputPath, "centers.txt"), centers);
+    
+    return 0;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new BoundedMapReduceKMeans(), args);
+    System.exit(res);
+  }
+}
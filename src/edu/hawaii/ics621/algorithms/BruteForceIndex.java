@@ -0,0 +1,32 @@
+package edu.hawaii.ics621.algorithms;
+
+/**
+ * Nearest center search that compares the point against every center.
+ * 
+ * @author George Lee
+ *
+ */
+public class BruteForceIndex extends NearestCenterIndex {
+  
+  public BruteForceIndex(double[] coords, int dimensions) {
+    super(coords, dimensions);
+  }
+  
+  @Override
+  public int nearest(double[] point) {
+    double minDist = Double.MAX_VALUE;
+    int minIndex = 0;
+    double dist;
+    
+    for (int center = 0; center < this.size(); center++) {
+      dist = this.distance(center, point);
+      if (dist < minDist) {
+        minDist = dist;
+        minIndex = center;
+      }
+    }
+    
+    this.nearestDistance = minDist;
+    return minIndex;
+  }
+}
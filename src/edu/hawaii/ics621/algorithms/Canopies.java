@@ -0,0 +1,159 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Arrays;
+import java.util.Random;
+import edu.hawaii.ics621.ArrayPointSet;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.PointSet;
+
+/**
+ * Canopy clustering with a loose threshold T1 and a tight threshold T2 (T1 > T2). Points are added one at a time
+ * and join every canopy whose founding point is within T1. A point that is not within T2 of any founding point
+ * founds a new canopy. Each canopy keeps the weighted sum of its points, so canopies built separately can be
+ * combined by adding their centroids with their counts as weights.
+ * 
+ * @author George Lee
+ *
+ */
+public class Canopies {
+  private final double t1;
+  private final double t2;
+  private final int dimensions;
+  
+  // The founding points, sums and counts of the canopies, one canopy after another.
+  private double[] founders = new double[0];
+  private double[] sums = new double[0];
+  private long[] counts = new long[0];
+  private int size;
+  
+  public Canopies(double t1, double t2, int dimensions) {
+    if (t1 < t2) {
+      throw new IllegalArgumentException("The loose threshold " + t1 + " is below the tight threshold " + t2);
+    }
+    
+    this.t1 = t1;
+    this.t2 = t2;
+    this.dimensions = dimensions;
+  }
+  
+  /**
+   * Build canopies over every point in a single pass.
+   */
+  public static Canopies build(PointSet points, double t1, double t2) {
+    Canopies canopies = new Canopies(t1, t2, points.dimensions());
+    double[] point = new double[points.dimensions()];
+    for (int i = 0; i < points.size(); i++) {
+      points.copy(i, point);
+      canopies.add(point, 0, 1);
+    }
+    
+    return canopies;
+  }
+  
+  /**
+   * Add a point that stands for weight points at the same position.
+   */
+  public void add(double[] point, int offset, long weight) {
+    double loose = this.t1 * this.t1;
+    double tight = this.t2 * this.t2;
+    boolean bound = false;
+    
+    for (int c = 0; c < this.size; c++) {
+      double dist = Distance.squared(this.founders, c * this.dimensions, point, offset, this.dimensions);
+      if (dist < loose) {
+        this.addTo(c, point, offset, weight);
+        bound |= dist < tight;
+      }
+    }
+    
+    if (!bound) {
+      this.grow();
+      System.arraycopy(point, offset, this.founders, this.size * this.dimensions, this.dimensions);
+      this.addTo(this.size, point, offset, weight);
+      this.size++;
+    }
+  }
+  
+  /**
+   * Add a canopy as it was built elsewhere, from the sum and the total weight of its points, without comparing it
+   * against the other canopies. Its centroid stands in for its founding point.
+   */
+  public void addCanopy(double[] sum, long count) {
+    this.grow();
+    int base = this.size * this.dimensions;
+    for (int d = 0; d < this.dimensions; d++) {
+      this.founders[base + d] = sum[d] / count;
+    }
+    System.arraycopy(sum, 0, this.sums, base, this.dimensions);
+    this.counts[this.size] = count;
+    this.size++;
+  }
+  
+  public int size() {
+    return this.size;
+  }
+  
+  public int dimensions() {
+    return this.dimensions;
+  }
+  
+  public double getLooseThreshold() {
+    return this.t1;
+  }
+  
+  public double getTightThreshold() {
+    return this.t2;
+  }
+  
+  /**
+   * @return the average of the points in each canopy, one canopy after another.
+   */
+  public double[] getCentroids() {
+    double[] centroids = new double[this.size * this.dimensions];
+    for (int c = 0; c < this.size; c++) {
+      for (int d = 0; d < this.dimensions; d++) {
+        centroids[c * this.dimensions + d] = this.sums[c * this.dimensions + d] / this.counts[c];
+      }
+    }
+    
+    return centroids;
+  }
+  
+  /**
+   * @return the total weight of the points in each canopy.
+   */
+  public long[] getCounts() {
+    return Arrays.copyOf(this.counts, this.size);
+  }
+  
+  /**
+   * Pick initial centers among the canopy centroids with k-means++, weighting each canopy by its size.
+   */
+  public double[] seed(int k, Random generator) {
+    double[] weights = new double[this.size];
+    for (int c = 0; c < this.size; c++) {
+      weights[c] = this.counts[c];
+    }
+    
+    return Seeding.plusPlus(new ArrayPointSet(this.getCentroids(), this.dimensions), weights, k, generator);
+  }
+  
+  private void addTo(int canopy, double[] point, int offset, long weight) {
+    int base = canopy * this.dimensions;
+    for (int d = 0; d < this.dimensions; d++) {
+      this.sums[base + d] += point[offset + d] * weight;
+    }
+    this.counts[canopy] += weight;
+  }
+  
+  private void grow() {
+    if (this.size < this.counts.length) {
+      return;
+    }
+    
+    int capacity = Math.max(16, this.counts.length * 2);
+    this.founders = Arrays.copyOf(this.founders, capacity * this.dimensions);
+    this.sums = Arrays.copyOf(this.sums, capacity * this.dimensions);
+    this.counts = Arrays.copyOf(this.counts, capacity);
+  }
+}
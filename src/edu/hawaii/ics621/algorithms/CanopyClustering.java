@@ -0,0 +1,224 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * Builds {@link Canopies} over the input with a MapReduce job. Each mapper builds canopies over its split, and a
+ * single reducer builds the final canopies over the centroids of the mappers' canopies, weighted by their sizes.
+ * The canopy centroids are written to canopies.txt and initial centers picked among them to centers-K.txt.
+ * 
+ * Setting kmeans.canopies to a canopies.txt file makes {@link MapReduceKMeans} compare each point only against the
+ * centers that share a canopy with it.
+ * 
+ * @author George Lee
+ *
+ */
+public class CanopyClustering extends Configured implements Tool {
+  public static final String T1_KEY = "kmeans.canopy.t1";
+  public static final String T2_KEY = "kmeans.canopy.t2";
+  public static final String CANOPIES_KEY = "kmeans.canopies";
+  static final String CANOPIES_CACHE_KEY = "kmeans.canopies.cache.path";
+  
+  static Canopies create(JobConf conf, int dimensions) {
+    return new Canopies(conf.getFloat(T1_KEY, 0), conf.getFloat(T2_KEY, 0), dimensions);
+  }
+  
+  /**
+   * Builds canopies over the points of one split and emits them when the task closes.
+   */
+  public static class CanopyMap extends MapReduceBase
+      implements Mapper<NullWritable, PointWritable, NullWritable, PartialSumWritable> {
+    
+    private JobConf conf;
+    private Canopies canopies;
+    private OutputCollector<NullWritable, PartialSumWritable> output;
+    
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+    }
+    
+    @Override
+    public void map(NullWritable key, PointWritable input, OutputCollector<NullWritable, PartialSumWritable> output,
+        Reporter reporter) throws IOException {
+      if (this.canopies == null) {
+        this.canopies = create(this.conf, input.getDimensions());
+        this.output = output;
+      }
+      
+      this.canopies.add(input.getCoords(), 0, 1);
+    }
+    
+    @Override
+    public void close() throws IOException {
+      if (this.canopies != null) {
+        emit(this.canopies, this.output);
+      }
+      super.close();
+    }
+  }
+  
+  /**
+   * Builds the final canopies over the canopies of every mapper.
+   */
+  public static class CanopyReduce extends MapReduceBase
+      implements Reducer<NullWritable, PartialSumWritable, NullWritable, PartialSumWritable> {
+    
+    private JobConf conf;
+    
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+    }
+    
+    @Override
+    public void reduce(NullWritable key, Iterator<PartialSumWritable> values,
+        OutputCollector<NullWritable, PartialSumWritable> output, Reporter reporter) throws IOException {
+      Canopies canopies = null;
+      while (values.hasNext()) {
+        PartialSumWritable canopy = values.next();
+        if (canopies == null) {
+          canopies = create(this.conf, canopy.getDimensions());
+        }
+        
+        canopies.add(canopy.average().getCoords(), 0, canopy.getCount());
+      }
+      
+      emit(canopies, output);
+    }
+  }
+  
+  /**
+   * Emit each canopy as the sum of its points.
+   */
+  static void emit(Canopies canopies, OutputCollector<NullWritable, PartialSumWritable> output)
+      throws IOException {
+    double[] centroids = canopies.getCentroids();
+    long[] counts = canopies.getCounts();
+    PartialSumWritable sum = new PartialSumWritable();
+    double[] point = new double[canopies.dimensions()];
+    
+    for (int c = 0; c < canopies.size(); c++) {
+      for (int d = 0; d < point.length; d++) {
+        point[d] = centroids[c * point.length + d] * counts[c];
+      }
+      
+      sum.set(point, counts[c]);
+      output.collect(NullWritable.get(), sum);
+    }
+  }
+  
+  static int printUsage() {
+    System.out.println("CanopyClustering <inputs> <clusters> <output>");
+    System.out.println("The thresholds are set with -D " + T1_KEY + "=<loose> -D " + T2_KEY + "=<tight>.");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 3.");
+      return printUsage();
+    }
+    
+    int numClusters;
+    try {
+      numClusters = Integer.parseInt(args[1]);
+    } catch (NumberFormatException except) {
+      System.out.println("ERROR: Integer expected instead of " + args[1]);
+      return printUsage();
+    }
+    
+    float t1 = getConf().getFloat(T1_KEY, 0);
+    float t2 = getConf().getFloat(T2_KEY, 0);
+    if (t2 <= 0 || t1 < t2) {
+      System.out.println("ERROR: Thresholds with " + T1_KEY + " >= " + T2_KEY + " > 0 expected.");
+      return printUsage();
+    }
+    
+    JobConf conf = new JobConf(getConf(), CanopyClustering.class);
+    conf.setJobName("kmeans-canopy");
+    
+    MapReduceKMeans.setInput(conf, args[0]);
+    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(PartialSumWritable.class);
+    conf.setMapperClass(CanopyMap.class);
+    conf.setReducerClass(CanopyReduce.class);
+    conf.setNumReduceTasks(1);
+    
+    Path output = new Path(args[2]);
+    Path jobOutput = new Path(output, "job");
+    FileOutputFormat.setOutputPath(conf, jobOutput);
+    JobClient.runJob(conf);
+    
+    // Read the canopies back as they are. Adding their centroids as points instead could merge canopies whose
+    // centroids ended up within T2 of each other.
+    FileSystem fs = FileSystem.get(conf);
+    Canopies canopies = null;
+    PartialSumWritable canopy = new PartialSumWritable();
+    double[] sum = null;
+    for (Path file : MapReduceKMeans.listFiles(fs, jobOutput, "part-")) {
+      SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+      while (reader.next(NullWritable.get(), canopy)) {
+        if (canopies == null) {
+          canopies = new Canopies(t1, t2, canopy.getDimensions());
+          sum = new double[canopy.getDimensions()];
+        }
+        for (int d = 0; d < sum.length; d++) {
+          sum[d] = canopy.get(d);
+        }
+        canopies.addCanopy(sum, canopy.getCount());
+      }
+      reader.close();
+    }
+    
+    if (canopies == null) {
+      System.out.println("ERROR: No points found in " + args[0]);
+      return -1;
+    }
+    
+    int dimensions = canopies.dimensions();
+    MapReduceKMeans.writeCenters(fs, new Path(output, "canopies.txt"),
+        AbstractClusteringAlgorithm.toPoints(canopies.getCentroids(), dimensions));
+    
+    Random generator = new Random(getConf().getLong(KMeansParallelSeeding.SEED_KEY, 0));
+    List<DoublePoint> centers = AbstractClusteringAlgorithm.toPoints(canopies.seed(numClusters, generator),
+        dimensions);
+    MapReduceKMeans.writeCenters(fs, new Path(output, "centers-" + numClusters + ".txt"), centers);
+    
+    System.out.println("Found " + canopies.size() + " canopies");
+    return 0;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new CanopyClustering(), args);
+    System.exit(res);
+  }
+}
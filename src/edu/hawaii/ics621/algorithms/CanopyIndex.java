@@ -0,0 +1,117 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Arrays;
+import edu.hawaii.ics621.Distance;
+
+/**
+ * Nearest center search that only compares a point against the centers that share a canopy with it: the centers
+ * within the loose threshold of a canopy center that is itself within the loose threshold of the point. Points
+ * that share no canopy with any center are compared against every center. On well-separated data most centers
+ * are never compared, but a point can be assigned to a center that is not its nearest when the canopies are too
+ * tight, so the result is an approximation of {@link BruteForceIndex}. The comparisons against the canopy centers
+ * are counted apart from those against the centers, so that {@link #getDistances()} never passes the number of
+ * centers times the number of points.
+ * 
+ * @author George Lee
+ *
+ */
+public class CanopyIndex extends NearestCenterIndex {
+  private final double[] canopies;
+  private final double loose;
+  
+  // The centers of each canopy: those of canopy c are members[starts[c]] to members[starts[c + 1] - 1].
+  private final int[] starts;
+  private int[] members;
+  
+  // The last query that compared each center, so that a center shared by several canopies is compared once.
+  private final int[] seen;
+  private int query;
+  
+  private long canopyDistances;
+  
+  /**
+   * @param canopies The canopy centers stored one after another.
+   * @param t1 The loose threshold of the canopies.
+   */
+  public CanopyIndex(double[] coords, int dimensions, double[] canopies, double t1) {
+    super(coords, dimensions);
+    this.canopies = canopies;
+    this.loose = t1 * t1;
+    this.starts = new int[canopies.length / dimensions + 1];
+    this.members = new int[this.size()];
+    this.seen = new int[this.size()];
+    this.rebuild();
+  }
+  
+  /**
+   * @return the number of distances to the canopy centers computed by this index so far.
+   */
+  public long getCanopyDistances() {
+    return this.canopyDistances;
+  }
+  
+  @Override
+  public void rebuild() {
+    int count = 0;
+    for (int c = 0; c < this.starts.length - 1; c++) {
+      this.starts[c] = count;
+      for (int center = 0; center < this.size(); center++) {
+        if (Distance.squared(this.canopies, c * this.dimensions, this.coords, center * this.dimensions,
+            this.dimensions) < this.loose) {
+          if (count == this.members.length) {
+            this.members = Arrays.copyOf(this.members, Math.max(16, count * 2));
+          }
+          this.members[count++] = center;
+        }
+      }
+    }
+    this.starts[this.starts.length - 1] = count;
+  }
+  
+  @Override
+  public int nearest(double[] point) {
+    // Start the marks over rather than let an old mark match a wrapped query number.
+    if (++this.query == 0) {
+      Arrays.fill(this.seen, 0);
+      this.query = 1;
+    }
+    
+    int best = -1;
+    double bestDist = Double.MAX_VALUE;
+    
+    for (int c = 0; c < this.starts.length - 1; c++) {
+      this.canopyDistances++;
+      if (Distance.squared(this.canopies, c * this.dimensions, point, 0, this.dimensions) >= this.loose) {
+        continue;
+      }
+      
+      for (int i = this.starts[c]; i < this.starts[c + 1]; i++) {
+        int center = this.members[i];
+        if (this.seen[center] == this.query) {
+          continue;
+        }
+        this.seen[center] = this.query;
+        
+        double dist = this.distance(center, point);
+        if (best < 0 || dist < bestDist || (dist == bestDist && center < best)) {
+          best = center;
+          bestDist = dist;
+        }
+      }
+    }
+    
+    // No canopy of the point holds a center, so fall back to every center.
+    if (best < 0) {
+      for (int center = 0; center < this.size(); center++) {
+        double dist = this.distance(center, point);
+        if (dist < bestDist) {
+          best = center;
+          bestDist = dist;
+        }
+      }
+    }
+    
+    this.nearestDistance = bestDist;
+    return best;
+  }
+}
@@ -0,0 +1,147 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.io.AssignmentWritable;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * Map-only job that labels every point with the cluster it belongs to and its distance to the center of that
+ * cluster, in a single scan with no shuffle. The output is text with one point per line in the format x,y,...
+ * followed by the cluster and the distance, separated by tabs. With kmeans.assign.binary it is SequenceFiles of
+ * {@link PointWritable} and {@link AssignmentWritable} instead.
+ * 
+ * With kmeans.assign.histograms, each task also writes the number of points it assigned to each cluster to a file
+ * named histogram-TASK in the output directory.
+ * 
+ * @author George Lee
+ *
+ */
+public class ClusterAssigner extends Configured implements Tool {
+  public static final String BINARY_OUTPUT_KEY = "kmeans.assign.binary";
+  public static final String HISTOGRAMS_KEY = "kmeans.assign.histograms";
+  
+  public static class AssignMap extends MapReduceBase
+      implements Mapper<NullWritable, PointWritable, PointWritable, AssignmentWritable> {
+    
+    private JobConf conf;
+    private NearestCenterIndex index;
+    private final AssignmentWritable assignment = new AssignmentWritable();
+    private long[] histogram;
+    
+    /**
+     * Get the centers from the distributed cache.
+     */
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+      
+      Centers centers;
+      try {
+        centers = Centers.load(conf);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not load the centers", e);
+      }
+      
+      String indexType = conf.get(MapReduceKMeans.INDEX_KEY, NearestCenterIndex.AUTO);
+      this.index = NearestCenterIndex.create(indexType, centers.getCoords(), centers.dimensions());
+      if (conf.getBoolean(HISTOGRAMS_KEY, false)) {
+        this.histogram = new long[centers.size()];
+      }
+    }
+    
+    @Override
+    public void map(NullWritable key, PointWritable input,
+        OutputCollector<PointWritable, AssignmentWritable> output, Reporter reporter) throws IOException {
+      int cluster = this.index.nearest(input.getCoords());
+      this.assignment.set(cluster, Math.sqrt(this.index.getNearestDistance()));
+      output.collect(input, this.assignment);
+      
+      if (this.histogram != null) {
+        this.histogram[cluster]++;
+      }
+    }
+    
+    /**
+     * Write the histogram of this task next to its output.
+     */
+    @Override
+    public void close() throws IOException {
+      if (this.histogram != null) {
+        Path path = new Path(FileOutputFormat.getWorkOutputPath(this.conf),
+            "histogram-" + this.conf.getInt("mapred.task.partition", 0));
+        PrintStream out = new PrintStream(path.getFileSystem(this.conf).create(path, true));
+        for (int i = 0; i < this.histogram.length; i++) {
+          if (this.histogram[i] > 0) {
+            out.println(i + "\t" + this.histogram[i]);
+          }
+        }
+        out.close();
+      }
+      super.close();
+    }
+  }
+  
+  static int printUsage() {
+    System.out.println("ClusterAssigner <inputs> <centers> <output>");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 3.");
+      return printUsage();
+    }
+    
+    JobConf conf = new JobConf(getConf(), ClusterAssigner.class);
+    conf.setJobName("kmeans-assign");
+    
+    MapReduceKMeans.setInput(conf, args[0]);
+    if (conf.getBoolean(BINARY_OUTPUT_KEY, false)) {
+      conf.setOutputFormat(SequenceFileOutputFormat.class);
+    } else {
+      conf.setOutputFormat(TextOutputFormat.class);
+    }
+    conf.setOutputKeyClass(PointWritable.class);
+    conf.setOutputValueClass(AssignmentWritable.class);
+    
+    conf.setMapperClass(AssignMap.class);
+    conf.setNumReduceTasks(0);
+    
+    Path output = new Path(args[2]);
+    FileOutputFormat.setOutputPath(conf, output);
+    
+    // Ship the final centers to the tasks in binary, next to the output rather than inside it.
+    FileSystem fs = FileSystem.get(conf);
+    Centers centers = new Centers(MapReduceKMeans.readCenters(fs, new Path(args[1])));
+    centers.share(conf, new Path(output.getParent(), output.getName() + "-centers.bin"));
+    
+    JobClient.runJob(conf);
+    return 0;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new ClusterAssigner(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,232 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoubleArray;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.IntArray;
+import edu.hawaii.ics621.PointSet;
+
+/**
+ * K-Means accelerated with Hamerly's bounds. Each point keeps an upper bound on the distance to its assigned
+ * cluster and a lower bound on the distance to every other cluster. When the upper bound is below both the lower
+ * bound and half the distance from the assigned cluster to its nearest neighbor, the assignment cannot change and
+ * the distances for that point are skipped. The bounds are loosened by the drift of the clusters as each point is
+ * visited, and only the points that change cluster update the sums, so each iteration is a single pass over the
+ * inputs. Produces the same assignments as {@link KMeans}, though the incremental sums can round differently in
+ * the last digits of the centers.
+ * 
+ * @author George Lee
+ *
+ */
+public class HamerlyKMeans extends AbstractClusteringAlgorithm {
+  private long distances;
+  private long skipped;
+  private long moved;
+  
+  /**
+   * @return the number of point to cluster distances computed by the last run.
+   */
+  public long getDistances() {
+    return this.distances;
+  }
+  
+  /**
+   * @return the number of point to cluster distances that the last run skipped compared to {@link KMeans}.
+   */
+  public long getSkipped() {
+    return this.skipped;
+  }
+  
+  @Override
+  protected List<DoublePoint> clusterInputs(PointSet inputs, List<DoublePoint> clusters) {
+    int k = clusters.size();
+    int n = inputs.size();
+    int dimensions = inputs.dimensions();
+    double[] centers = toCoords(clusters);
+    double[] sums = new double[centers.length];
+    double[] average = new double[dimensions];
+    double[] point = new double[dimensions];
+    int[] counts = new int[k];
+    double[] halfNearest = new double[k];
+    double[] drifts = new double[k];
+    
+    IntArray assignments = IntArray.allocate(n, this.offHeap);
+    DoubleArray upper = DoubleArray.allocate(n, this.offHeap);
+    DoubleArray lower = DoubleArray.allocate(n, this.offHeap);
+    
+    assignments.fill(-1);
+    this.distances = 0;
+    this.skipped = 0;
+    
+    boolean changed = true;
+    int iterations = 0;
+    double maxDrift = 0;
+    
+    while (changed && iterations < MAX_ITERATIONS) {
+      long start = System.nanoTime();
+      long distancesBefore = this.distances;
+      long skippedBefore = this.skipped;
+      this.moved = 0;
+      
+      // The exact SSE costs a distance per point, so it is only computed for a listener.
+      double sse = 0;
+      
+      if (iterations > 0) {
+        updateHalfNearest(centers, dimensions, halfNearest);
+      }
+      
+      for (int i = 0; i < n; i++) {
+        int cluster = assignments.get(i);
+        int nearest;
+        if (cluster < 0) {
+          // The first assignment has no bounds to work with.
+          inputs.copy(i, point);
+          nearest = this.assign(point, i, centers, upper, lower);
+        } else {
+          // Loosen the bounds by how far the clusters moved since the last visit.
+          double upperBound = upper.get(i) + drifts[cluster];
+          double lowerBound = lower.get(i) - maxDrift;
+          upper.set(i, upperBound);
+          lower.set(i, lowerBound);
+          
+          double bound = Math.max(halfNearest[cluster], lowerBound);
+          if (upperBound < bound) {
+            this.skipped += k;
+            if (this.listener != null) {
+              inputs.copy(i, point);
+              sse += Distance.squared(point, 0, centers, cluster * dimensions, dimensions);
+            }
+            continue;
+          }
+          
+          // Tighten the upper bound and check again before comparing against every cluster.
+          inputs.copy(i, point);
+          double squared = Distance.squared(point, 0, centers, cluster * dimensions, dimensions);
+          double distance = Math.sqrt(squared);
+          upper.set(i, distance);
+          this.distances++;
+          if (distance < bound) {
+            this.skipped += k - 1;
+            sse += squared;
+            continue;
+          }
+          
+          nearest = this.assign(point, i, centers, upper, lower);
+        }
+        
+        if (this.listener != null) {
+          sse += Distance.squared(point, 0, centers, nearest * dimensions, dimensions);
+        }
+        
+        // Only the points that change cluster touch the sums.
+        if (nearest != cluster) {
+          if (cluster >= 0) {
+            // An emptied cluster starts over from zero rather than keep the rounding left in its sums.
+            if (--counts[cluster] == 0) {
+              Arrays.fill(sums, cluster * dimensions, (cluster + 1) * dimensions, 0);
+            } else {
+              subtract(sums, cluster * dimensions, point, dimensions);
+            }
+          }
+          Distance.add(sums, nearest * dimensions, point, 0, dimensions);
+          counts[nearest]++;
+          assignments.set(i, nearest);
+          this.moved++;
+        }
+      }
+      
+      long assigned = System.nanoTime();
+      
+      // Recompute the clusters as an average.
+      changed = false;
+      maxDrift = 0;
+      for (int j = 0; j < k; j++) {
+        drifts[j] = 0;
+        if (counts[j] > 0) {
+          for (int d = 0; d < dimensions; d++) {
+            average[d] = sums[j * dimensions + d] / counts[j];
+          }
+          
+          drifts[j] = Math.sqrt(Distance.squared(centers, j * dimensions, average, 0, dimensions));
+          System.arraycopy(average, 0, centers, j * dimensions, dimensions);
+        }
+        
+        if (drifts[j] > EPSILON) {
+          changed = true;
+        }
+        maxDrift = Math.max(maxDrift, drifts[j]);
+      }
+      
+      if (this.listener != null) {
+        long[] sizes = new long[k];
+        for (int j = 0; j < k; j++) {
+          sizes[j] = counts[j];
+        }
+        
+        this.listener.iterationFinished(new IterationMetrics(iterations, n, this.distances - distancesBefore,
+            this.skipped - skippedBefore, this.moved, sizes, sse, assigned - start, System.nanoTime() - assigned));
+      }
+      iterations++;
+    }
+    
+    System.out.println("Number of iterations: " + iterations);
+    System.out.println("Distances computed: " + this.distances + ", skipped: " + this.skipped);
+    
+    return toPoints(centers, dimensions);
+  }
+  
+  /**
+   * Compare the input against every cluster to find its nearest cluster and reset its bounds.
+   * 
+   * @return the index of the nearest cluster.
+   */
+  private int assign(double[] point, int i, double[] centers, DoubleArray upper, DoubleArray lower) {
+    int dimensions = point.length;
+    double nearest = Double.MAX_VALUE;
+    double second = Double.MAX_VALUE;
+    int nearestIndex = 0;
+    
+    // Compare squared distances so ties resolve exactly as they do in KMeans.
+    for (int j = 0; j < centers.length / dimensions; j++) {
+      double dist = Distance.squared(point, 0, centers, j * dimensions, dimensions);
+      if (dist < nearest) {
+        second = nearest;
+        nearest = dist;
+        nearestIndex = j;
+      } else if (dist < second) {
+        second = dist;
+      }
+    }
+    
+    this.distances += centers.length / dimensions;
+    upper.set(i, Math.sqrt(nearest));
+    lower.set(i, Math.sqrt(second));
+    return nearestIndex;
+  }
+  
+  /**
+   * Take a point out of the sum of a cluster.
+   */
+  private static void subtract(double[] sums, int sumOffset, double[] point, int dimensions) {
+    for (int d = 0; d < dimensions; d++) {
+      sums[sumOffset + d] -= point[d];
+    }
+  }
+  
+  /**
+   * Find half the distance from each cluster to its nearest other cluster.
+   */
+  private static void updateHalfNearest(double[] centers, int dimensions, double[] halfNearest) {
+    Arrays.fill(halfNearest, Double.MAX_VALUE);
+    for (int j = 0; j < halfNearest.length; j++) {
+      for (int other = j + 1; other < halfNearest.length; other++) {
+        double dist = Distance.squared(centers, j * dimensions, centers, other * dimensions, dimensions);
+        double half = Math.sqrt(dist) / 2;
+        halfNearest[j] = Math.min(halfNearest[j], half);
+        halfNearest[other] = Math.min(halfNearest[other], half);
+      }
+    }
+  }
+}
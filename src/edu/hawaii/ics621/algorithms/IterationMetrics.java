@@ -0,0 +1,94 @@
+package edu.hawaii.ics621.algorithms;
+
+/**
+ * What one iteration of an in-memory clustering algorithm did. Inputs are already parsed when they are clustered
+ * in memory, so the time is split between assigning the points, which includes adding them to the sums of their
+ * clusters, and aggregating, which moves the centers.
+ * 
+ * @author George Lee
+ *
+ */
+public class IterationMetrics {
+  private final int iteration;
+  private final long points;
+  private final long distances;
+  private final long skipped;
+  private final long changed;
+  private final long[] clusterSizes;
+  private final double sse;
+  private final long assignNanos;
+  private final long aggregateNanos;
+  
+  public IterationMetrics(int iteration, long points, long distances, long skipped, long changed,
+      long[] clusterSizes, double sse, long assignNanos, long aggregateNanos) {
+    this.iteration = iteration;
+    this.points = points;
+    this.distances = distances;
+    this.skipped = skipped;
+    this.changed = changed;
+    this.clusterSizes = clusterSizes;
+    this.sse = sse;
+    this.assignNanos = assignNanos;
+    this.aggregateNanos = aggregateNanos;
+  }
+  
+  public int getIteration() {
+    return this.iteration;
+  }
+  
+  public long getPoints() {
+    return this.points;
+  }
+  
+  /**
+   * @return the number of point to center distances computed.
+   */
+  public long getDistances() {
+    return this.distances;
+  }
+  
+  /**
+   * @return the number of point to center distances that were not computed compared to checking every center.
+   */
+  public long getSkipped() {
+    return this.skipped;
+  }
+  
+  /**
+   * @return the number of points assigned to a different cluster than in the previous iteration. Every point
+   *     counts as changed in the first iteration.
+   */
+  public long getChanged() {
+    return this.changed;
+  }
+  
+  /**
+   * @return the number of points assigned to each cluster.
+   */
+  public long[] getClusterSizes() {
+    return this.clusterSizes;
+  }
+  
+  /**
+   * @return the sum of the squared distances from each point to the center it was assigned to, measured before
+   *     the centers moved.
+   */
+  public double getSSE() {
+    return this.sse;
+  }
+  
+  public long getAssignNanos() {
+    return this.assignNanos;
+  }
+  
+  public long getAggregateNanos() {
+    return this.aggregateNanos;
+  }
+  
+  @Override
+  public String toString() {
+    return "iteration " + this.iteration + ": " + this.points + " points, " + this.distances + " distances, "
+        + this.skipped + " skipped, " + this.changed + " changed, SSE " + this.sse + ", assign "
+        + (this.assignNanos / 1000000) + " ms, aggregate " + (this.aggregateNanos / 1000000) + " ms";
+  }
+}
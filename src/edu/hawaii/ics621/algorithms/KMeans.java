@@ -1,61 +1,113 @@
 package edu.hawaii.ics621.algorithms;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import edu.hawaii.ics621.Distance;
 import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.IntArray;
+import edu.hawaii.ics621.PointSet;
 
 public class KMeans extends AbstractClusteringAlgorithm {
+  private final String indexType;
+  private IntArray assignments;
+  private Canopies canopies;
+  
+  public KMeans() {
+    this(NearestCenterIndex.AUTO);
+  }
+  
+  /**
+   * @param indexType The type of {@link NearestCenterIndex} used to find the nearest cluster.
+   */
+  public KMeans(String indexType) {
+    this.indexType = indexType;
+  }
+  
+  /**
+   * @return the index of the cluster each input was assigned to in the last iteration of the last run.
+   */
+  public IntArray getAssignments() {
+    return this.assignments;
+  }
 
+  /**
+   * Seed the clusters from canopies and only compare each point against the clusters that share a canopy with it,
+   * using a {@link CanopyIndex}. Pass null to go back to comparing against every cluster.
+   */
+  public void setCanopies(Canopies canopies) {
+    this.canopies = canopies;
+  }
+  
+  @Override
+  protected List<DoublePoint> initialClusters(PointSet inputs, int clusters) {
+    if (this.canopies == null) {
+      return super.initialClusters(inputs, clusters);
+    }
+    
+    return toPoints(this.canopies.seed(clusters, this.generator), inputs.dimensions());
+  }
+  
   @Override
-  protected List<DoublePoint> clusterInputs(List<DoublePoint> inputs, List<DoublePoint> clusters) {
-    Map<DoublePoint, List<DoublePoint>> results = new HashMap<DoublePoint, List<DoublePoint>>();
-    List<DoublePoint> newClusters;
-    DoublePoint tempPoint;
+  protected List<DoublePoint> clusterInputs(PointSet inputs, List<DoublePoint> clusters) {
+    // Everything used by the iterations is allocated up front.
+    int dimensions = inputs.dimensions();
+    double[] centers = toCoords(clusters);
+    double[] sums = new double[centers.length];
+    long[] counts = new long[clusters.size()];
+    double[] point = new double[dimensions];
+    NearestCenterIndex index;
+    if (this.canopies != null) {
+      index = new CanopyIndex(centers, dimensions, this.canopies.getCentroids(),
+          this.canopies.getLooseThreshold());
+    } else {
+      index = NearestCenterIndex.create(this.indexType, centers, dimensions);
+    }
+    this.assignments = IntArray.allocate(inputs.size(), this.offHeap);
+    this.assignments.fill(-1);
     boolean changed = true;
     int iterations = 0;
     
     while (changed && iterations < MAX_ITERATIONS) {
-      changed = false;
+      long start = System.nanoTime();
+      long distances = index.getDistances();
+      long moved = 0;
+      double sse = 0;
       
-      // Reset the table.
-      results.clear();
-      for (DoublePoint cluster : clusters) {
-        results.put(cluster, new ArrayList<DoublePoint>());
-      }
+      // Reset the sums.
+      Arrays.fill(sums, 0);
+      Arrays.fill(counts, 0);
       
       // Cluster the points.
-      for (DoublePoint input : inputs) {
+      for (int i = 0; i < inputs.size(); i++) {
         // Find the nearest cluster.
-        tempPoint = null;
+        inputs.copy(i, point);
+        int nearest = index.nearest(point);
+        sse += index.getNearestDistance();
         
-        for (DoublePoint key : results.keySet()) {
-          if (tempPoint == null || input.distance(key) < input.distance(tempPoint)) {
-            tempPoint = key;
-          }
+        if (this.assignments.get(i) != nearest) {
+          this.assignments.set(i, nearest);
+          moved++;
         }
-        
-        results.get(tempPoint).add(input);
+        Distance.add(sums, nearest * dimensions, point, 0, dimensions);
+        counts[nearest]++;
       }
+      long assigned = System.nanoTime();
       
       // Recompute the clusters as an average.
-      newClusters = new ArrayList<DoublePoint>();
+      changed = moveCenters(centers, sums, counts, dimensions);
       
-      for (DoublePoint cluster : clusters) {
-        tempPoint = DoublePoint.average(results.get(cluster));
-        newClusters.add(tempPoint);
-        double delta = Math.abs(cluster.distance(tempPoint));
-        if (delta > EPSILON && !changed) {
-          changed = true;
-        }
-      }
+      index.rebuild();
       
-      clusters = new ArrayList<DoublePoint>(newClusters);
+      if (this.listener != null) {
+        distances = index.getDistances() - distances;
+        this.listener.iterationFinished(new IterationMetrics(iterations, inputs.size(), distances,
+            (long) inputs.size() * counts.length - distances, moved, counts.clone(), sse, assigned - start,
+            System.nanoTime() - assigned));
+      }
       iterations++;
     }
     
     System.out.println("Number of iterations: " + iterations);
-    return clusters;
+    return toPoints(centers, dimensions);
   }
 }
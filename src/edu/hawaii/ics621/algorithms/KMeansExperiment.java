@@ -0,0 +1,216 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.DefaultJobHistoryParser;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobHistory;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.io.TextPointInputFormat;
+
+/**
+ * Runs {@link MapReduceKMeans} over every combination of data size, number of clusters, mappers and reducers, and
+ * writes one CSV row per iteration with the wall time, the time spent in each phase and the job counters.
+ * 
+ * The inputs are read from the data directory as data-SIZE.txt and the initial centers as centers-K.txt. Phase times
+ * come from the job history written to the output directory of each job; they are -1 if no history was found.
+ * 
+ * @author George Lee
+ *
+ */
+public class KMeansExperiment extends Configured implements Tool {
+  public static final String DATA_FORMAT_KEY = "kmeans.experiment.data.format";
+  public static final String CENTERS_FORMAT_KEY = "kmeans.experiment.centers.format";
+  
+  private static final String TASK_GROUP = "org.apache.hadoop.mapred.Task$Counter";
+  private static final String FILE_SYSTEM_GROUP = "FileSystemCounters";
+  
+  /**
+   * Counters written for each iteration, as group and name.
+   */
+  private static final String[][] COUNTERS = {
+    {TASK_GROUP, "MAP_INPUT_RECORDS"},
+    {TASK_GROUP, "MAP_OUTPUT_RECORDS"},
+    {TASK_GROUP, "MAP_OUTPUT_BYTES"},
+    {TASK_GROUP, "COMBINE_INPUT_RECORDS"},
+    {TASK_GROUP, "COMBINE_OUTPUT_RECORDS"},
+    {TASK_GROUP, "REDUCE_INPUT_RECORDS"},
+    {TASK_GROUP, "REDUCE_SHUFFLE_BYTES"},
+    {TASK_GROUP, "SPILLED_RECORDS"},
+    {FILE_SYSTEM_GROUP, "HDFS_BYTES_READ"},
+    {FILE_SYSTEM_GROUP, "FILE_BYTES_WRITTEN"},
+  };
+  
+  static int printUsage() {
+    System.out.println("KMeansExperiment <data dir> <output dir> <results.csv> <sizes> <clusters> <mappers> "
+        + "<reducers> <repetitions>");
+    System.out.println("Sizes, clusters, mappers and reducers are comma separated lists, e.g. 1m,10m,100m.");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 8) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 8.");
+      return printUsage();
+    }
+    
+    String dataDir = args[0];
+    String outputDir = args[1];
+    String[] sizes = args[3].split(",");
+    String[] clusters = args[4].split(",");
+    int[] mappers;
+    int[] reducers;
+    int repetitions;
+    try {
+      mappers = parseInts(args[5]);
+      reducers = parseInts(args[6]);
+      repetitions = Integer.parseInt(args[7]);
+    } catch (NumberFormatException except) {
+      System.out.println("ERROR: Integer expected: " + except.getMessage());
+      return printUsage();
+    }
+    
+    String dataFormat = getConf().get(DATA_FORMAT_KEY, "data-%s.txt");
+    String centersFormat = getConf().get(CENTERS_FORMAT_KEY, "centers-%s.txt");
+    
+    final PrintStream results = new PrintStream(new FileOutputStream(args[2]), true);
+    results.print("size,clusters,mappers,reducers,repetition,iteration,wall_ms,map_ms,shuffle_ms,reduce_ms");
+    for (MapReduceKMeans.Counter counter : MapReduceKMeans.Counter.values()) {
+      results.print("," + counter.name().toLowerCase());
+    }
+    results.print(",parse_millis");
+    for (String[] counter : COUNTERS) {
+      results.print("," + counter[1].toLowerCase());
+    }
+    results.println();
+    
+    try {
+      for (String size : sizes) {
+        for (String k : clusters) {
+          for (int numMappers : mappers) {
+            for (int numReducers : reducers) {
+              for (int repetition = 0; repetition < repetitions; repetition++) {
+                String jobName = "kmeans-" + size + "-" + k + "-n" + numMappers + "-r" + numReducers + "-"
+                    + repetition;
+                final String prefix = size + "," + k + "," + numMappers + "," + numReducers + "," + repetition;
+                final String outputPath = outputDir + "/" + jobName;
+                
+                MapReduceKMeans kmeans = new MapReduceKMeans();
+                kmeans.setConf(getConf());
+                kmeans.setIterationListener(new MapReduceKMeans.IterationListener() {
+                  @Override
+                  public void iterationFinished(int iteration, RunningJob job, long millis) throws IOException {
+                    Path iterationPath = new Path(outputPath + "/iteration-" + iteration);
+                    results.println(prefix + "," + iteration + "," + millis + ","
+                        + formatPhases(iterationPath) + "," + formatCounters(job.getCounters()));
+                  }
+                });
+                
+                kmeans.runIterations(jobName, dataDir + "/" + String.format(dataFormat, size),
+                    dataDir + "/" + String.format(centersFormat, k), outputPath, numMappers, numReducers);
+              }
+            }
+          }
+        }
+      }
+    } finally {
+      results.close();
+    }
+    
+    return 0;
+  }
+  
+  private static int[] parseInts(String list) {
+    String[] values = list.split(",");
+    int[] ints = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      ints[i] = Integer.parseInt(values[i].trim());
+    }
+    
+    return ints;
+  }
+  
+  private static String formatCounters(Counters counters) {
+    StringBuilder builder = new StringBuilder();
+    for (MapReduceKMeans.Counter counter : MapReduceKMeans.Counter.values()) {
+      builder.append(counters.getCounter(counter)).append(',');
+    }
+    builder.append(counters.getCounter(TextPointInputFormat.Counter.PARSE_MILLIS));
+    for (String[] counter : COUNTERS) {
+      builder.append(',').append(counters.findCounter(counter[0], counter[1]).getCounter());
+    }
+    
+    return builder.toString();
+  }
+  
+  /**
+   * Read the phase times of a job from the history in its output directory. The map phase lasts from the start of
+   * the first map to the end of the last one. The shuffle and reduce times are those of the slowest reduce task,
+   * with sorting counted as part of the reduce.
+   * 
+   * @return the map, shuffle and reduce times in milliseconds, separated by commas.
+   */
+  private String formatPhases(Path outputPath) throws IOException {
+    FileSystem fs = outputPath.getFileSystem(getConf());
+    Path historyPath = new Path(outputPath, "_logs/history");
+    if (!fs.exists(historyPath)) {
+      return "-1,-1,-1";
+    }
+    
+    Path historyFile = null;
+    for (FileStatus status : fs.listStatus(historyPath)) {
+      if (!status.getPath().getName().endsWith("_conf.xml")) {
+        historyFile = status.getPath();
+      }
+    }
+    if (historyFile == null) {
+      return "-1,-1,-1";
+    }
+    
+    JobHistory.JobInfo job = new JobHistory.JobInfo("");
+    DefaultJobHistoryParser.parseJobTasks(historyFile.toUri().getPath(), job, fs);
+    
+    long mapStart = Long.MAX_VALUE;
+    long mapFinish = 0;
+    long shuffle = 0;
+    long reduce = 0;
+    for (JobHistory.Task task : job.getAllTasks().values()) {
+      String type = task.get(JobHistory.Keys.TASK_TYPE);
+      for (JobHistory.TaskAttempt attempt : task.getTaskAttempts().values()) {
+        if (!JobHistory.Values.SUCCESS.name().equals(attempt.get(JobHistory.Keys.TASK_STATUS))) {
+          continue;
+        }
+        
+        long start = attempt.getLong(JobHistory.Keys.START_TIME);
+        long finish = attempt.getLong(JobHistory.Keys.FINISH_TIME);
+        if (JobHistory.Values.MAP.name().equals(type)) {
+          mapStart = Math.min(mapStart, start);
+          mapFinish = Math.max(mapFinish, finish);
+        } else if (JobHistory.Values.REDUCE.name().equals(type)) {
+          long shuffleFinished = attempt.getLong(JobHistory.Keys.SHUFFLE_FINISHED);
+          shuffle = Math.max(shuffle, shuffleFinished - start);
+          reduce = Math.max(reduce, finish - shuffleFinished);
+        }
+      }
+    }
+    
+    long map = mapFinish > mapStart ? mapFinish - mapStart : 0;
+    return map + "," + shuffle + "," + reduce;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new KMeansExperiment(), args);
+    System.exit(res);
+  }
+}
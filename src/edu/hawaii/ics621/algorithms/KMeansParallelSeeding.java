@@ -0,0 +1,337 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.ArrayPointSet;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * Picks initial centers for {@link MapReduceKMeans} with k-means|| (scalable k-means++). Starting from one point
+ * picked uniformly at random, each round measures the cost of the candidates picked so far and then samples every
+ * point with probability oversampling * k * d^2 / cost. The candidates are weighted by the number of points
+ * nearest to them, and k-means++ followed by weighted Lloyd iterations reduces them to k centers in memory.
+ * 
+ * @author George Lee
+ *
+ */
+public class KMeansParallelSeeding extends Configured implements Tool {
+  public static final String SEED_KEY = "kmeans.seed";
+  public static final String ROUNDS_KEY = "kmeans.seeding.rounds";
+  public static final String OVERSAMPLING_KEY = "kmeans.seeding.oversampling";
+  static final String COST_KEY = "kmeans.seeding.cost";
+  static final String ROUND_KEY = "kmeans.seeding.round";
+  static final String STATS_PREFIX = "stats-";
+  
+  /**
+   * Either measures the cost of the candidates or samples new candidates, depending on whether the cost is already
+   * known. Without candidates it instead keeps one point picked uniformly at random. Counts, costs and the picked
+   * point are written to a small side file per task.
+   */
+  public static class SampleMap extends MapReduceBase
+      implements Mapper<NullWritable, PointWritable, NullWritable, PointWritable> {
+    
+    private JobConf conf;
+    private NearestCenterIndex index;
+    private Random generator;
+    private double threshold;
+    
+    private long count;
+    private double cost;
+    private PointWritable picked;
+    
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+      
+      // Seed each task differently, but the same way on every run. Each part of the seed is scrambled through a
+      // generator before the next is added, so that no two rounds or partitions of any size share a stream.
+      long seed = new Random(conf.getLong(SEED_KEY, 0)).nextLong() + conf.getInt(ROUND_KEY, 0);
+      seed = new Random(seed).nextLong() + conf.getInt("mapred.task.partition", 0);
+      this.generator = new Random(seed);
+      
+      if (conf.get(Centers.PATH_KEY) != null) {
+        Centers centers;
+        try {
+          centers = Centers.load(conf);
+        } catch (IOException e) {
+          throw new RuntimeException("Could not load the centers", e);
+        }
+        
+        this.index = NearestCenterIndex.create(conf.get(MapReduceKMeans.INDEX_KEY, NearestCenterIndex.AUTO),
+            centers.getCoords(), centers.dimensions());
+      }
+      
+      // The expected number of points sampled in a round is the oversampling factor.
+      if (conf.get(COST_KEY) != null) {
+        this.threshold = Double.parseDouble(conf.get(COST_KEY)) / conf.getFloat(OVERSAMPLING_KEY, 0);
+      }
+    }
+    
+    @Override
+    public void map(NullWritable key, PointWritable input,
+        OutputCollector<NullWritable, PointWritable> output, Reporter reporter) throws IOException {
+      this.count++;
+      
+      // Reservoir sampling keeps each point with equal probability.
+      if (this.index == null) {
+        if (this.generator.nextDouble() * this.count < 1) {
+          this.picked = new PointWritable(input.getCoords().clone());
+        }
+        return;
+      }
+      
+      double[] point = input.getCoords();
+      this.index.nearest(point);
+      double dist = this.index.getNearestDistance();
+      
+      if (this.threshold > 0) {
+        if (this.generator.nextDouble() * this.threshold < dist) {
+          output.collect(key, input);
+        }
+      } else {
+        this.cost += dist;
+      }
+    }
+    
+    @Override
+    public void close() throws IOException {
+      if (this.threshold == 0) {
+        Path path = new Path(FileOutputFormat.getWorkOutputPath(this.conf),
+            STATS_PREFIX + this.conf.getInt("mapred.task.partition", 0));
+        DataOutputStream out = path.getFileSystem(this.conf).create(path, true);
+        out.writeLong(this.count);
+        out.writeDouble(this.cost);
+        out.writeBoolean(this.picked != null);
+        if (this.picked != null) {
+          this.picked.write(out);
+        }
+        out.close();
+      }
+      super.close();
+    }
+  }
+  
+  static int printUsage() {
+    System.out.println("KMeansParallelSeeding <inputs> <clusters> <output>");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 3.");
+      return printUsage();
+    }
+    
+    int numClusters;
+    try {
+      numClusters = Integer.parseInt(args[1]);
+    } catch (NumberFormatException except) {
+      System.out.println("ERROR: Integer expected instead of " + args[1]);
+      return printUsage();
+    }
+    
+    Path output = new Path(args[2]);
+    List<DoublePoint> centers = this.seed(args[0], numClusters, output);
+    MapReduceKMeans.writeCenters(FileSystem.get(getConf()), new Path(output, "centers-" + numClusters + ".txt"),
+        centers);
+    return 0;
+  }
+  
+  /**
+   * Pick k centers from the points in the input path, using the output path for intermediate files.
+   */
+  public List<DoublePoint> seed(String dataPath, int numClusters, Path output) throws IOException {
+    FileSystem fs = FileSystem.get(getConf());
+    int rounds = getConf().getInt(ROUNDS_KEY, 5);
+    float oversampling = getConf().getFloat(OVERSAMPLING_KEY, 2) * numClusters;
+    Random generator = new Random(getConf().getLong(SEED_KEY, 0));
+    
+    // Pick the first candidate uniformly: each task keeps one point, and tasks are chosen by how many they saw.
+    Path pickPath = new Path(output, "pick");
+    this.runRound("kmeans-seed-pick", dataPath, null, null, pickPath, 0, 0, oversampling);
+    List<DoublePoint> candidates = new ArrayList<DoublePoint>();
+    candidates.add(pickFirst(fs, pickPath, generator));
+    
+    for (int round = 1; round <= rounds; round++) {
+      Path centersPath = new Path(output, "candidates-" + round + ".bin");
+      
+      Path costPath = new Path(output, "cost-" + round);
+      this.runRound("kmeans-seed-cost-" + round, dataPath, candidates, centersPath, costPath, round, 0,
+          oversampling);
+      double cost = readCost(fs, costPath);
+      System.out.println("Round " + round + ": " + candidates.size() + " candidates, cost " + cost);
+      if (cost == 0) {
+        break;
+      }
+      
+      Path samplePath = new Path(output, "sample-" + round);
+      this.runRound("kmeans-seed-sample-" + round, dataPath, candidates, centersPath, samplePath, round, cost,
+          oversampling);
+      readSamples(fs, samplePath, candidates);
+    }
+    
+    // Weigh the candidates and reduce them to k centers.
+    double[] weights = this.weigh(dataPath, candidates, new Path(output, "candidates.bin"), new Path(output,
+        "weights"));
+    ArrayPointSet points = new ArrayPointSet(AbstractClusteringAlgorithm.toCoords(candidates),
+        candidates.get(0).getDimensions());
+    double[] centers = Seeding.plusPlus(points, weights, numClusters, generator);
+    Seeding.refine(points, weights, centers, AbstractClusteringAlgorithm.MAX_ITERATIONS,
+        AbstractClusteringAlgorithm.EPSILON);
+    
+    return AbstractClusteringAlgorithm.toPoints(centers, points.dimensions());
+  }
+  
+  private void runRound(String jobName, String dataPath, List<DoublePoint> candidates, Path centersPath,
+      Path outputPath, int round, double cost, float oversampling) throws IOException {
+    JobConf conf = new JobConf(getConf(), KMeansParallelSeeding.class);
+    conf.setJobName(jobName);
+    
+    MapReduceKMeans.setInput(conf, dataPath);
+    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(PointWritable.class);
+    conf.setMapperClass(SampleMap.class);
+    conf.setNumReduceTasks(0);
+    FileOutputFormat.setOutputPath(conf, outputPath);
+    
+    conf.setInt(ROUND_KEY, round);
+    conf.setFloat(OVERSAMPLING_KEY, oversampling);
+    if (candidates != null) {
+      new Centers(candidates).share(conf, centersPath);
+    }
+    if (cost > 0) {
+      conf.set(COST_KEY, Double.toString(cost));
+    }
+    
+    JobClient.runJob(conf);
+  }
+  
+  /**
+   * Count the points nearest to each candidate, reusing the in-mapper combining mode of MapReduceKMeans.
+   */
+  private double[] weigh(String dataPath, List<DoublePoint> candidates, Path centersPath, Path outputPath)
+      throws IOException {
+    JobConf conf = new JobConf(getConf(), KMeansParallelSeeding.class);
+    conf.setJobName("kmeans-seed-weights");
+    
+    MapReduceKMeans.setInput(conf, dataPath);
+    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    conf.setOutputKeyClass(IntWritable.class);
+    conf.setOutputValueClass(PartialSumWritable.class);
+    conf.setMapperClass(MapReduceKMeans.Map.class);
+    conf.setReducerClass(MapReduceKMeans.Combiner.class);
+    conf.setBoolean(MapReduceKMeans.IN_MAPPER_COMBINE_KEY, true);
+    FileOutputFormat.setOutputPath(conf, outputPath);
+    new Centers(candidates).share(conf, centersPath);
+    
+    JobClient.runJob(conf);
+    
+    FileSystem fs = FileSystem.get(conf);
+    double[] weights = new double[candidates.size()];
+    IntWritable key = new IntWritable();
+    PartialSumWritable value = new PartialSumWritable();
+    for (Path file : MapReduceKMeans.listFiles(fs, outputPath, "part-")) {
+      SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+      while (reader.next(key, value)) {
+        weights[key.get()] += value.getCount();
+      }
+      reader.close();
+    }
+    
+    return weights;
+  }
+  
+  /**
+   * Choose among the points kept by each task with probability proportional to the number of points it saw.
+   */
+  private static DoublePoint pickFirst(FileSystem fs, Path path, Random generator) throws IOException {
+    List<DoublePoint> picks = new ArrayList<DoublePoint>();
+    List<Long> counts = new ArrayList<Long>();
+    long total = 0;
+    
+    PointWritable point = new PointWritable();
+    for (Path file : MapReduceKMeans.listFiles(fs, path, STATS_PREFIX)) {
+      DataInputStream in = fs.open(file);
+      long count = in.readLong();
+      in.readDouble();
+      if (in.readBoolean()) {
+        point.readFields(in);
+        picks.add(point.toPoint());
+        counts.add(count);
+        total += count;
+      }
+      in.close();
+    }
+    
+    if (total == 0) {
+      throw new IOException("No points found under the input path");
+    }
+    
+    double target = generator.nextDouble() * total;
+    for (int i = 0; i < picks.size(); i++) {
+      target -= counts.get(i);
+      if (target < 0) {
+        return picks.get(i);
+      }
+    }
+    
+    return picks.get(picks.size() - 1);
+  }
+  
+  private static double readCost(FileSystem fs, Path path) throws IOException {
+    double cost = 0;
+    for (Path file : MapReduceKMeans.listFiles(fs, path, STATS_PREFIX)) {
+      DataInputStream in = fs.open(file);
+      in.readLong();
+      cost += in.readDouble();
+      in.close();
+    }
+    
+    return cost;
+  }
+  
+  private static void readSamples(FileSystem fs, Path path, List<DoublePoint> candidates) throws IOException {
+    Configuration conf = new Configuration();
+    PointWritable point = new PointWritable();
+    for (Path file : MapReduceKMeans.listFiles(fs, path, "part-")) {
+      SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+      while (reader.next(NullWritable.get(), point)) {
+        candidates.add(point.toPoint());
+      }
+      reader.close();
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new KMeansParallelSeeding(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,168 @@
+package edu.hawaii.ics621.algorithms;
+
+/**
+ * Nearest center search using a kd-tree over the centers. The tree is stored implicitly: the centers are reordered
+ * so that each range is split at its middle element, and the split axis is kept for that position. Small ranges
+ * are scanned linearly.
+ * 
+ * @author George Lee
+ *
+ */
+public class KdTreeIndex extends NearestCenterIndex {
+  private static final int LEAF_SIZE = 8;
+  
+  private final int[] order;
+  private final int[] axes;
+  
+  public KdTreeIndex(double[] coords, int dimensions) {
+    super(coords, dimensions);
+    this.order = new int[this.size()];
+    this.axes = new int[this.size()];
+    this.rebuild();
+  }
+  
+  @Override
+  public void rebuild() {
+    for (int i = 0; i < this.order.length; i++) {
+      this.order[i] = i;
+    }
+    
+    this.build(0, this.order.length);
+  }
+  
+  @Override
+  public int nearest(double[] point) {
+    return this.search(0, this.order.length, point, -1, Double.MAX_VALUE);
+  }
+  
+  /**
+   * Search the range [lo, hi) for a center closer than the current best.
+   * 
+   * @return the index of the best center found so far.
+   */
+  private int search(int lo, int hi, double[] point, int best, double bestDist) {
+    if (hi - lo <= LEAF_SIZE) {
+      for (int i = lo; i < hi; i++) {
+        double dist = this.distance(this.order[i], point);
+        if (this.isCloser(this.order[i], dist, best, bestDist)) {
+          best = this.order[i];
+          bestDist = dist;
+          this.nearestDistance = dist;
+        }
+      }
+      
+      return best;
+    }
+    
+    int mid = (lo + hi) >>> 1;
+    int axis = this.axes[mid];
+    double diff = point[axis] - this.coords[this.order[mid] * this.dimensions + axis];
+    
+    double dist = this.distance(this.order[mid], point);
+    if (this.isCloser(this.order[mid], dist, best, bestDist)) {
+      best = this.order[mid];
+      bestDist = dist;
+      this.nearestDistance = dist;
+    }
+    
+    // Search the side containing the point first, then the other side if it could hold a closer center.
+    int nearLo = diff < 0 ? lo : mid + 1;
+    int nearHi = diff < 0 ? mid : hi;
+    int found = this.search(nearLo, nearHi, point, best, bestDist);
+    
+    // Each improvement replaces the previous best, so the distance recorded last belongs to the center found.
+    if (found != best) {
+      best = found;
+      bestDist = this.nearestDistance;
+    }
+    
+    if (diff * diff <= bestDist) {
+      int farLo = diff < 0 ? mid + 1 : lo;
+      int farHi = diff < 0 ? hi : mid;
+      best = this.search(farLo, farHi, point, best, bestDist);
+    }
+    
+    return best;
+  }
+  
+  /**
+   * @return true if the center is closer than the current best, preferring the lower index on ties.
+   */
+  private boolean isCloser(int center, double dist, int best, double bestDist) {
+    return best < 0 || dist < bestDist || (dist == bestDist && center < best);
+  }
+  
+  /**
+   * Split the range [lo, hi) at its middle along the axis with the widest spread.
+   */
+  private void build(int lo, int hi) {
+    if (hi - lo <= LEAF_SIZE) {
+      return;
+    }
+    
+    int axis = 0;
+    double widest = -1;
+    for (int d = 0; d < this.dimensions; d++) {
+      double min = Double.MAX_VALUE;
+      double max = -Double.MAX_VALUE;
+      for (int i = lo; i < hi; i++) {
+        double value = this.coords[this.order[i] * this.dimensions + d];
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      
+      if (max - min > widest) {
+        widest = max - min;
+        axis = d;
+      }
+    }
+    
+    int mid = (lo + hi) >>> 1;
+    this.select(lo, hi - 1, mid, axis);
+    this.axes[mid] = axis;
+    
+    this.build(lo, mid);
+    this.build(mid + 1, hi);
+  }
+  
+  /**
+   * Reorder [left, right] so that the element at k is in its sorted position along the axis.
+   */
+  private void select(int left, int right, int k, int axis) {
+    while (left < right) {
+      int pivot = this.partition(left, right, (left + right) >>> 1, axis);
+      if (k == pivot) {
+        return;
+      } else if (k < pivot) {
+        right = pivot - 1;
+      } else {
+        left = pivot + 1;
+      }
+    }
+  }
+  
+  private int partition(int left, int right, int pivot, int axis) {
+    double value = this.value(pivot, axis);
+    this.swap(pivot, right);
+    int store = left;
+    for (int i = left; i < right; i++) {
+      if (this.value(i, axis) < value) {
+        this.swap(i, store);
+        store++;
+      }
+    }
+    
+    this.swap(store, right);
+    return store;
+  }
+  
+  private double value(int position, int axis) {
+    return this.coords[this.order[position] * this.dimensions + axis];
+  }
+  
+  private void swap(int i, int j) {
+    int temp = this.order[i];
+    this.order[i] = this.order[j];
+    this.order[j] = temp;
+  }
+}
@@ -1,31 +1,43 @@
 package edu.hawaii.ics621.algorithms;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
-import org.apache.hadoop.mapred.KeyValueTextInputFormat;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Partitioner;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.RunningJob;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.Distance;
 import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointInputFormat;
+import edu.hawaii.ics621.io.PointWritable;
+import edu.hawaii.ics621.io.TextPointInputFormat;
 
 /**
  * MapReduce implementation of the KMeansClustering algorithm using Hadoop.
@@ -34,41 +46,134 @@ import edu.hawaii.ics621.DoublePoint;
  *
  */
 public class MapReduceKMeans extends Configured implements Tool {
-  public static final String KEY_PREFIX = "kmeans.centers.";
-  private static final String dataPath = "/user/kmeans/data";
-  private static final String[] dataPaths = {"data-1m.txt", "data-10m.txt", "data-100m.txt"};
-  private static final String[] clusterPaths = {"centers-10.txt", "centers-100.txt", "centers-1000.txt"};
-//  private static final int MAX_ITERATIONS = 1000;
-//  private static final double EPSILON = 1E-8;
+  public static final String MAX_ITERATIONS_KEY = "kmeans.iterations.max";
+  public static final String BINARY_INPUT_KEY = "kmeans.input.binary";
+  public static final String IN_MAPPER_COMBINE_KEY = "kmeans.map.combine";
+  public static final String INDEX_KEY = "kmeans.index";
+  public static final String TIMING_KEY = TextPointInputFormat.TIMING_KEY;
+  static final String CLUSTERS_KEY = "kmeans.clusters";
   
   /**
-   * Handles the Map phase of the algorithm. Takes the input and assigns it to a cluster.
+   * The mapper only assigns each point with this probability. Every task draws from a generator seeded by
+   * SAMPLE_SEED_KEY and its partition, so a point is drawn against the same number in every job and the sample for
+   * a larger fraction holds the sample for a smaller one.
+   */
+  static final String SAMPLE_KEY = "kmeans.map.sample";
+  static final String SAMPLE_SEED_KEY = "kmeans.map.sample.seed";
+  
+  /**
+   * Run the first iterations on a sample of this fraction of the points. The sample grows by
+   * PROGRESSIVE_GROWTH_KEY times whenever no center moves or PROGRESSIVE_ITERATIONS_KEY iterations have run on it,
+   * until it would hold the whole input. Only iterations over the whole input can end the run.
+   */
+  public static final String PROGRESSIVE_KEY = "kmeans.progressive.fraction";
+  public static final String PROGRESSIVE_GROWTH_KEY = "kmeans.progressive.growth";
+  public static final String PROGRESSIVE_ITERATIONS_KEY = "kmeans.progressive.iterations";
+  
+  /**
+   * Each map task writes its sum of squared distances to a side file with this prefix, since a whole-number
+   * counter cannot hold the SSE of a large input at any fixed scale.
+   */
+  static final String SSE_PREFIX = "sse-";
+  
+  /**
+   * Clusters with more than this many centers do not report their sizes, since every size is its own counter.
+   */
+  public static final int MAX_CLUSTER_SIZE_COUNTERS = 100;
+  public static final String CLUSTER_SIZE_GROUP = "kmeans.cluster.sizes";
+  
+  private IterationListener listener;
+  private Centers canopies;
+  private Path canopiesPath;
+  private float sample = 1;
+  private double sse;
+  
+  /**
+   * Counters reported by the tasks. The reducer reports CENTERS_MOVED so the driver can check for convergence
+   * without reading the output. The times are only measured when TIMING_KEY is set, since timing every point has
+   * a cost of its own.
+   */
+  public static enum Counter {
+    CENTERS_MOVED,
+    EMPTY_CLUSTERS,
+    POINTS,
+    DISTANCES,
+    DISTANCES_SKIPPED,
+    CANOPY_DISTANCES,
+    ASSIGN_MILLIS,
+    AGGREGATE_MILLIS
+  }
+  
+  /**
+   * Notified after each iteration job, so that callers such as {@link KMeansExperiment} can record the jobs.
+   */
+  public static interface IterationListener {
+    void iterationFinished(int iteration, RunningJob job, long millis) throws IOException;
+  }
+  
+  /**
+   * Handles the Map phase of the algorithm. Takes the input and assigns it to a cluster. When in-mapper combining
+   * is enabled, the partial sums are kept in arrays and only emitted once per cluster when the task closes.
    */
   public static class Map extends MapReduceBase implements
-      Mapper<Text, Text, IntWritable, Text> {
+      Mapper<NullWritable, PointWritable, IntWritable, PartialSumWritable> {
+    
+    private JobConf conf;
+    private double sample;
+    private Random generator;
+    private Centers centers;
+    private NearestCenterIndex index;
+    private int dimensions;
+    private final IntWritable outKey = new IntWritable();
+    private final PartialSumWritable outValue = new PartialSumWritable();
+    
+    // Partial sums stored one after another for each center when combining in the mapper.
+    private double[] sums;
+    private long[] counts;
+    private OutputCollector<IntWritable, PartialSumWritable> output;
     
-    private List<DoublePoint> centers;
+    // Counted over the task and reported when it closes.
+    private Reporter reporter;
+    private long points;
+    private double sse;
+    private boolean timing;
+    private long assignNanos;
+    private long aggregateNanos;
     
     /**
-     * Get the centers from the configuration.
+     * Get the centers from the distributed cache.
      */
     @Override
     public void configure(JobConf conf) {
       super.configure(conf);
+      this.conf = conf;
+      this.timing = conf.getBoolean(TIMING_KEY, false);
+      this.sample = conf.getFloat(SAMPLE_KEY, 1);
+      this.generator = new Random(conf.getLong(SAMPLE_SEED_KEY, 0) * 1000003
+          + conf.getInt("mapred.task.partition", 0));
       
-      if (this.centers == null) {
-        this.centers = new ArrayList<DoublePoint>();
-        String[] coords;
-        DoublePoint point;
-        
-        // Load the centers from the conf.
-        int count = Integer.parseInt(conf.get(KEY_PREFIX + "count"));
-        
-        for (int i=0; i < count; i++) {
-          coords = conf.get(KEY_PREFIX + i).split(",");
-          point = new DoublePoint(Double.parseDouble(coords[0]), Double.parseDouble(coords[1]));
-          centers.add(point);
+      Centers canopies = null;
+      try {
+        this.centers = Centers.load(conf);
+        if (conf.get(CanopyClustering.CANOPIES_CACHE_KEY) != null) {
+          canopies = Centers.load(conf, CanopyClustering.CANOPIES_CACHE_KEY);
         }
+      } catch (IOException e) {
+        throw new RuntimeException("Could not load the centers", e);
+      }
+      
+      this.dimensions = this.centers.dimensions();
+      if (canopies != null) {
+        this.index = new CanopyIndex(this.centers.getCoords(), this.dimensions, canopies.getCoords(),
+            conf.getFloat(CanopyClustering.T1_KEY, 0));
+      } else {
+        String indexType = conf.get(INDEX_KEY, NearestCenterIndex.AUTO);
+        this.index = NearestCenterIndex.create(indexType, this.centers.getCoords(), this.dimensions);
+      }
+      
+      if (conf.getBoolean(IN_MAPPER_COMBINE_KEY, false)) {
+        this.sums = new double[this.centers.size() * this.dimensions];
+        this.counts = new long[this.centers.size()];
       }
     }
     
@@ -76,114 +181,244 @@ public class MapReduceKMeans extends Configured implements Tool {
      * Map the input to a cluster.
      */
     @Override
-    public void map(Text key, Text input,
-        OutputCollector<IntWritable, Text> output, Reporter reporter) throws IOException {
+    public void map(NullWritable key, PointWritable input,
+        OutputCollector<IntWritable, PartialSumWritable> output, Reporter reporter) throws IOException {
       
-      // Parse the input in the format x,y.
-      String[] coords = key.toString().split(",");
-      DoublePoint point = new DoublePoint(Double.parseDouble(coords[0]), Double.parseDouble(coords[1]));
+      if (this.sample < 1 && this.generator.nextDouble() >= this.sample) {
+        return;
+      }
       
-      double minDist = Double.MAX_VALUE;
-      int minIndex = 0;
-      int index = 0;
+      long start = this.timing ? System.nanoTime() : 0;
+      this.reporter = reporter;
       
       // Assign the input to a cluster.
-      for (DoublePoint center : centers) {
-        if (center.distance(point) < minDist) {
-          minDist = center.distance(point);
-          minIndex = index;
+      double[] point = input.getCoords();
+      int minIndex = this.index.nearest(point);
+      this.sse += this.index.getNearestDistance();
+      this.points++;
+      long assigned = this.timing ? System.nanoTime() : 0;
+      
+      if (this.counts != null) {
+        // Add the point to the partial sums; they are emitted in close().
+        this.output = output;
+        Distance.add(this.sums, minIndex * this.dimensions, point, 0, this.dimensions);
+        this.counts[minIndex]++;
+      } else {
+        // Emit the point as a partial sum of one.
+        this.outKey.set(minIndex);
+        this.outValue.set(point, 1);
+        output.collect(this.outKey, this.outValue);
+      }
+      
+      if (this.timing) {
+        this.assignNanos += assigned - start;
+        this.aggregateNanos += System.nanoTime() - assigned;
+      }
+    }
+    
+    /**
+     * Emit one partial sum per cluster if we are combining in the mapper.
+     */
+    @Override
+    public void close() throws IOException {
+      long start = System.nanoTime();
+      if (this.output != null) {
+        for (int i = 0; i < this.counts.length; i++) {
+          if (this.counts[i] > 0) {
+            this.outKey.set(i);
+            this.outValue.set(this.sums, i * this.dimensions, this.dimensions, this.counts[i]);
+            this.output.collect(this.outKey, this.outValue);
+          }
         }
-        
-        index++;
       }
       
-      // Emit the output as key, value.
-      output.collect(new IntWritable(minIndex), key);
+      if (this.reporter != null) {
+        this.reporter.incrCounter(Counter.POINTS, this.points);
+        this.reporter.incrCounter(Counter.DISTANCES, this.index.getDistances());
+        this.reporter.incrCounter(Counter.DISTANCES_SKIPPED, this.points * this.index.size()
+            - this.index.getDistances());
+        if (this.index instanceof CanopyIndex) {
+          this.reporter.incrCounter(Counter.CANOPY_DISTANCES, ((CanopyIndex) this.index).getCanopyDistances());
+        }
+        writeSse(this.conf, new double[] {this.sse});
+        if (this.timing) {
+          this.aggregateNanos += System.nanoTime() - start;
+          this.reporter.incrCounter(Counter.ASSIGN_MILLIS, this.assignNanos / 1000000);
+          this.reporter.incrCounter(Counter.AGGREGATE_MILLIS, this.aggregateNanos / 1000000);
+        }
+      }
+      super.close();
     }
   }
   
   /**
    * Combiner class that calculates partial sums for the reducer.
    */
-  public static class Combiner extends MapReduceBase implements Reducer<IntWritable, Text, IntWritable, Text> {
+  public static class Combiner extends MapReduceBase
+      implements Reducer<IntWritable, PartialSumWritable, IntWritable, PartialSumWritable> {
+    
+    private final PartialSumWritable sum = new PartialSumWritable();
+    private boolean timing;
+    private Reporter reporter;
+    private long aggregateNanos;
+    
     @Override
-    public void reduce(IntWritable key, Iterator<Text> values, OutputCollector<IntWritable, Text> output,
-        Reporter reporter) throws IOException {
-      // Track the partial sums and the count
-      double x = 0;
-      double y = 0;
-      int count = 0;
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.timing = conf.getBoolean(TIMING_KEY, false);
+    }
+    
+    @Override
+    public void reduce(IntWritable key, Iterator<PartialSumWritable> values,
+        OutputCollector<IntWritable, PartialSumWritable> output, Reporter reporter) throws IOException {
+      long start = this.timing ? System.nanoTime() : 0;
+      this.reporter = reporter;
       
-      String[] coords;
+      // Track the partial sums and the count
+      this.sum.clear(0);
       while (values.hasNext()) {
-        coords = values.next().toString().split(",");
-        x += Double.parseDouble(coords[0]);
-        y += Double.parseDouble(coords[1]);
-        count += 1;
+        this.sum.add(values.next());
       }
       
-      // Construct the value to be x dimension, y dimension, and count
-      String outString = Double.toString(x) + "," + Double.toString(y) + "," + count;
-      output.collect(key, new Text(outString));
+      output.collect(key, this.sum);
+      
+      if (this.timing) {
+        this.aggregateNanos += System.nanoTime() - start;
+      }
+    }
+    
+    @Override
+    public void close() throws IOException {
+      if (this.timing && this.reporter != null) {
+        this.reporter.incrCounter(Counter.AGGREGATE_MILLIS, this.aggregateNanos / 1000000);
+      }
+      super.close();
+    }
+  }
+  
+  /**
+   * Sends each reducer a contiguous range of clusters of nearly equal size. The part files then hold the clusters
+   * in order, one range after another.
+   */
+  public static class ClusterPartitioner implements Partitioner<IntWritable, PartialSumWritable> {
+    private int clusters;
+    
+    @Override
+    public void configure(JobConf conf) {
+      this.clusters = conf.getInt(CLUSTERS_KEY, 1);
+    }
+    
+    @Override
+    public int getPartition(IntWritable key, PartialSumWritable value, int numPartitions) {
+      return (int) ((long) key.get() * numPartitions / this.clusters);
+    }
+    
+    /**
+     * @return the first cluster sent to a partition, or the number of clusters for the partition after the last.
+     */
+    static int firstCluster(int partition, int numPartitions, int clusters) {
+      return (int) (((long) partition * clusters + numPartitions - 1) / numPartitions);
     }
   }
   
   /**
-   * A reducer class that takes results from the combiner to construct the input.
+   * A reducer class that takes results from the combiner to construct the input. Each center is written with the
+   * index of its cluster as the key, so the driver can put the part files of several reducers back in order.
    */
-  public static class Reduce extends MapReduceBase implements Reducer<IntWritable, Text, IntWritable, Text> {
+  public static class Reduce extends MapReduceBase
+      implements Reducer<IntWritable, PartialSumWritable, IntWritable, Text> {
     
-    private List<DoublePoint> centers;
+    private Centers centers;
+    private OutputCollector<IntWritable, Text> output;
+    private int nextIndex;
+    private int endIndex;
+    private final PartialSumWritable sum = new PartialSumWritable();
+    private boolean timing;
+    private Reporter reporter;
+    private long aggregateNanos;
     
     /**
-     * Get the centers from the configuration.
+     * Get the centers from the distributed cache.
      */
     @Override
     public void configure(JobConf conf) {
       super.configure(conf);
-      if (this.centers == null) {
-        this.centers = new ArrayList<DoublePoint>();
-        String[] coords;
-        DoublePoint point;
-        
-        // Load the centers from the conf.
-        int count = Integer.parseInt(conf.get(KEY_PREFIX + "count"));
-        
-        for (int i=0; i < count; i++) {
-          coords = conf.get(KEY_PREFIX + i).split(",");
-          point = new DoublePoint(Double.parseDouble(coords[0]), Double.parseDouble(coords[1]));
-          centers.add(point);
-        }
+      this.timing = conf.getBoolean(TIMING_KEY, false);
+      
+      try {
+        this.centers = Centers.load(conf);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not load the centers", e);
       }
+      
+      // The range of clusters this reducer is responsible for.
+      int partition = conf.getInt("mapred.task.partition", 0);
+      int partitions = Math.max(1, conf.getNumReduceTasks());
+      this.nextIndex = ClusterPartitioner.firstCluster(partition, partitions, this.centers.size());
+      this.endIndex = ClusterPartitioner.firstCluster(partition + 1, partitions, this.centers.size());
     }
     
     /**
      * Calculate the new averages for the clusters.
      */
     @Override
-    public void reduce(IntWritable key, Iterator<Text> values, OutputCollector<IntWritable, Text> output,
-        Reporter reporter) throws IOException {
-      // We receive the sums from the combiner, so we have to sum up those values and count.
-      double x = 0;
-      double y = 0;
-      int count = 0;
-      String[] partialSums;
+    public void reduce(IntWritable key, Iterator<PartialSumWritable> values,
+        OutputCollector<IntWritable, Text> output, Reporter reporter) throws IOException {
+      long start = this.timing ? System.nanoTime() : 0;
+      this.output = output;
+      this.reporter = reporter;
       
+      // Clusters that received no points keep their old center so the output stays in order.
+      this.emitUnchanged(key.get());
+      
+      // We receive the sums from the combiner, so we have to sum up those values and count.
+      this.sum.clear(0);
       while (values.hasNext()) {
-        partialSums = values.next().toString().split(",");
-        x += Double.parseDouble(partialSums[0]);
-        y += Double.parseDouble(partialSums[1]);
-        count += Integer.parseInt(partialSums[2]);
+        this.sum.add(values.next());
       }
       
       // Calculate the averages to find the new cluster value.
-      x /= count;
-      y /= count;
-      String outStr = Double.toString(x) + "," + Double.toString(y);
+      DoublePoint center = this.sum.average();
       
       // Check if we need to update our center.
+      double delta = Distance.squared(this.centers.getCoords(), key.get() * this.centers.dimensions(),
+          center.getCoords(), 0, this.centers.dimensions());
+      if (delta > AbstractClusteringAlgorithm.EPSILON * AbstractClusteringAlgorithm.EPSILON) {
+        reporter.incrCounter(Counter.CENTERS_MOVED, 1);
+      }
+      
+      if (this.centers.size() <= MAX_CLUSTER_SIZE_COUNTERS) {
+        reporter.incrCounter(CLUSTER_SIZE_GROUP, Integer.toString(key.get()), this.sum.getCount());
+      }
       
-      output.collect(null, new Text(outStr));
+      output.collect(key, new Text(center.format()));
+      this.nextIndex = key.get() + 1;
+      
+      if (this.timing) {
+        this.aggregateNanos += System.nanoTime() - start;
+      }
+    }
+    
+    /**
+     * Emit the remaining centers that received no points. A reducer that received no clusters at all has no
+     * output to write to; the driver keeps the old centers for its range.
+     */
+    @Override
+    public void close() throws IOException {
+      if (this.output != null) {
+        this.emitUnchanged(this.endIndex);
+        if (this.timing) {
+          this.reporter.incrCounter(Counter.AGGREGATE_MILLIS, this.aggregateNanos / 1000000);
+        }
+      }
+      super.close();
+    }
+    
+    private void emitUnchanged(int end) throws IOException {
+      for (; this.nextIndex < end; this.nextIndex++) {
+        this.output.collect(new IntWritable(this.nextIndex), new Text(this.centers.toPoint(this.nextIndex).format()));
+        this.reporter.incrCounter(Counter.EMPTY_CLUSTERS, 1);
+      }
     }
   }
 
@@ -193,83 +428,277 @@ public class MapReduceKMeans extends Configured implements Tool {
     return -1;
   }
   
-  private void createJob(String jobName, String dataPath, String clusterPath, String outputPath, int numMappers) throws Exception {
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+  
+  private RunningJob createJob(String jobName, String dataPath, List<DoublePoint> centers, String centersPath,
+      String outputPath, int numMappers, int numReducers) throws Exception {
     JobConf conf = new JobConf(getConf(), MapReduceKMeans.class);
     
     conf.setJobName(jobName);
 
-    // the keys are strings.
-    conf.setInputFormat(KeyValueTextInputFormat.class);
-    
+    setInput(conf, dataPath);
+    conf.setMapOutputValueClass(PartialSumWritable.class);
     conf.setOutputKeyClass(IntWritable.class);
     conf.setOutputValueClass(Text.class);
 
     conf.setMapperClass(Map.class);
-    conf.setCombinerClass(Combiner.class);
     conf.setReducerClass(Reduce.class);
+    conf.setPartitionerClass(ClusterPartitioner.class);
+    conf.setInt(CLUSTERS_KEY, centers.size());
+    
+    // The mapper already emits one partial sum per cluster when it combines its own output.
+    if (!getConf().getBoolean(IN_MAPPER_COMBINE_KEY, false)) {
+      conf.setCombinerClass(Combiner.class);
+    }
     
+    if (this.sample < 1) {
+      conf.setFloat(SAMPLE_KEY, this.sample);
+    }
     conf.setNumMapTasks(numMappers);
-    FileInputFormat.setInputPaths(conf, new Path(dataPath));
+    conf.setNumReduceTasks(numReducers);
     FileOutputFormat.setOutputPath(conf, new Path(outputPath));
     
-    // Read the clusters file to generate the clusters.
-    FileSystem fs = FileSystem.get(conf);
-    DataInputStream stream = new DataInputStream(fs.open(new Path(clusterPath)));
-    BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-    String line;
-    int index = 0;
-    while ((line = reader.readLine()) != null) {
-      conf.set(KEY_PREFIX + index, line);
-      index++;
+    // Write out the clusters as a binary file in the distributed cache.
+    new Centers(centers).share(conf, new Path(centersPath));
+    if (this.canopies != null) {
+      this.canopies.share(conf, this.canopiesPath, CanopyClustering.CANOPIES_CACHE_KEY);
     }
     
-    conf.set(KEY_PREFIX + "count", Integer.toString(index));
+    return JobClient.runJob(conf);
+  }
+  
+  /**
+   * Runs one job per Lloyd iteration, feeding the centers written by each iteration into the next, until no
+   * center moves more than EPSILON or the maximum number of iterations is reached.
+   * 
+   * @return the final centers.
+   */
+  public List<DoublePoint> runIterations(String jobName, String dataPath, String clusterPath, String outputPath,
+      int numMappers, int numReducers) throws Exception {
+    int maxIterations = getConf().getInt(MAX_ITERATIONS_KEY, AbstractClusteringAlgorithm.MAX_ITERATIONS);
+    FileSystem fs = FileSystem.get(getConf());
+    List<DoublePoint> centers = readCenters(fs, new Path(clusterPath));
     
-    // Write out the clusters
-    stream.close();
+    // Only compare points against the centers in their canopies when canopies are given.
+    String canopies = getConf().get(CanopyClustering.CANOPIES_KEY);
+    this.canopies = null;
+    if (canopies != null) {
+      if (getConf().getFloat(CanopyClustering.T1_KEY, 0) <= 0) {
+        throw new IllegalArgumentException(CanopyClustering.CANOPIES_KEY + " needs a positive "
+            + CanopyClustering.T1_KEY);
+      }
+      this.canopies = new Centers(readCenters(fs, new Path(canopies)));
+      this.canopiesPath = new Path(outputPath, "canopies.bin");
+    }
+    
+    this.sample = getConf().getFloat(PROGRESSIVE_KEY, 1);
+    float growth = getConf().getFloat(PROGRESSIVE_GROWTH_KEY, 2);
+    int sampleIterations = getConf().getInt(PROGRESSIVE_ITERATIONS_KEY, 3);
+    if (this.sample < 1 && growth <= 1) {
+      throw new IllegalArgumentException(PROGRESSIVE_GROWTH_KEY + " must be above 1 instead of " + growth);
+    }
+    
+    String iterationPath;
+    RunningJob job;
+    long moved = 1;
+    int iterations = 0;
+    int iterationsOnSample = 0;
     
     long start = System.currentTimeMillis();
-    JobClient.runJob(conf);
+    while ((moved > 0 || this.sample < 1) && iterations < maxIterations) {
+      iterationPath = outputPath + "/iteration-" + iterations;
+      
+      long iterationStart = System.currentTimeMillis();
+      job = this.createJob(jobName + "-" + iterations, dataPath, centers,
+          outputPath + "/centers-" + iterations + ".bin", iterationPath, numMappers, numReducers);
+      long iterationEnd = System.currentTimeMillis();
+      
+      moved = job.getCounters().getCounter(Counter.CENTERS_MOVED);
+      this.sse = readSse(fs, new Path(iterationPath), 1)[0];
+      System.out.println(jobName + " iteration " + iterations + " took " + (iterationEnd - iterationStart)
+          + " ms, " + moved + " centers moved, SSE " + this.sse
+          + (this.sample < 1 ? " on a sample of " + this.sample : ""));
+      if (this.listener != null) {
+        this.listener.iterationFinished(iterations, job, iterationEnd - iterationStart);
+      }
+      
+      centers = readCenters(fs, new Path(iterationPath), centers);
+      iterations++;
+      
+      // A sample with fewer points than centers cannot place them, so go straight to the whole input.
+      if (this.sample < 1 && job.getCounters().getCounter(Counter.POINTS) < centers.size()) {
+        System.out.println(jobName + " sample of " + this.sample + " held fewer points than centers, "
+            + "skipping the rest of the sampled iterations");
+        this.sample = 1;
+        moved = 1;
+      }
+      
+      // Move on to a larger sample once the centers settle on this one.
+      if (this.sample < 1 && (moved == 0 || ++iterationsOnSample >= sampleIterations)) {
+        this.sample = Math.min(1, this.sample * growth);
+        iterationsOnSample = 0;
+        moved = 1;
+      }
+    }
+    this.sample = 1;
     long end = System.currentTimeMillis();
     
-    System.out.println(conf.getJobName() + "took " + ((end - start) / 1000) + " seconds");
+    System.out.println(jobName + " took " + ((end - start) / 1000) + " seconds over " + iterations + " iterations");
+    return centers;
+  }
+  
+  /**
+   * Write the SSE of each model of this task to a side file, one line per model with its index and its SSE. Nothing
+   * is written outside of a task, where there is no work output directory.
+   */
+  static void writeSse(JobConf conf, double[] sse) throws IOException {
+    Path dir = FileOutputFormat.getWorkOutputPath(conf);
+    if (dir == null) {
+      return;
+    }
     
+    Path path = new Path(dir,
+        String.format(SSE_PREFIX + "%05d", conf.getInt("mapred.task.partition", 0)));
+    PrintStream out = new PrintStream(path.getFileSystem(conf).create(path, true));
+    for (int i = 0; i < sse.length; i++) {
+      out.println(i + "\t" + sse[i]);
+    }
+    out.close();
   }
   
-  @Override
-  public int run(String[] args) throws Exception {
-    String jobName;
-    String fullDataPath;
-    String fullClusterPath;
-    String outputPath;
-    
-    // Create jobs varying data.
-    for (String path : dataPaths) {
-      jobName = "kmeans-" + path.split(".")[0];
-      fullDataPath = dataPath + "/" + path;
-      fullClusterPath = dataPath + "/centers-1000.txt";
-      outputPath = "/user/kmeans/output/" + jobName;
-      this.createJob(jobName, fullDataPath, fullClusterPath, outputPath, 10);
+  /**
+   * Sum the SSE of each model over the side files written by the map tasks of a job.
+   */
+  static double[] readSse(FileSystem fs, Path dir, int models) throws IOException {
+    double[] sse = new double[models];
+    for (Path file : listFiles(fs, dir, SSE_PREFIX)) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file)));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        sse[Integer.parseInt(line.substring(0, tab))] += Double.parseDouble(line.substring(tab + 1));
+      }
+      
+      reader.close();
     }
     
-    // Create jobs varying clusters.
-    for (String path : clusterPaths) {
-      jobName = "kmeans-" + path.split(".")[0];
-      fullDataPath = dataPath + "/data-100m.txt";
-      fullClusterPath = dataPath + "/" + path;
-      outputPath = "/user/kmeans/output/" + jobName;
-      this.createJob(jobName, fullDataPath, fullClusterPath, outputPath, 10);
+    return sse;
+  }
+  
+  /**
+   * @return the sum of squared distances from each point to its center in the last iteration of the last run.
+   */
+  public double getSse() {
+    return this.sse;
+  }
+  
+  /**
+   * Read the points from the input path. Points are either text in the format x,y,... or SequenceFiles written by
+   * PointConverter.
+   */
+  static void setInput(JobConf conf, String dataPath) {
+    if (conf.getBoolean(BINARY_INPUT_KEY, false)) {
+      conf.setInputFormat(PointInputFormat.class);
+    } else {
+      conf.setInputFormat(TextPointInputFormat.class);
+    }
+    
+    FileInputFormat.setInputPaths(conf, new Path(dataPath));
+  }
+  
+  /**
+   * List the files in a directory whose names start with a prefix, in name order.
+   */
+  static Path[] listFiles(FileSystem fs, Path dir, final String prefix) throws IOException {
+    FileStatus[] statuses = fs.listStatus(dir, new PathFilter() {
+      @Override
+      public boolean accept(Path file) {
+        return file.getName().startsWith(prefix);
+      }
+    });
+    
+    Path[] files = new Path[statuses.length];
+    for (int i = 0; i < statuses.length; i++) {
+      files[i] = statuses[i].getPath();
+    }
+    Arrays.sort(files);
+    
+    return files;
+  }
+  
+  /**
+   * Read centers in the format x,y,... from a file, or from the part files of a job output directory. A line may
+   * start with the index of its cluster and a tab, in which case the index is ignored.
+   */
+  static List<DoublePoint> readCenters(FileSystem fs, Path path) throws IOException {
+    List<DoublePoint> centers = new ArrayList<DoublePoint>();
+    for (Path file : centerFiles(fs, path)) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file)));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        centers.add(DoublePoint.parse(line.substring(line.indexOf('\t') + 1)));
+      }
+      
+      reader.close();
+    }
+    
+    return centers;
+  }
+  
+  /**
+   * Stitch the centers written by the reducers back together in the order of their cluster indexes. Clusters
+   * that no reducer wrote keep their previous center.
+   */
+  static List<DoublePoint> readCenters(FileSystem fs, Path path, List<DoublePoint> previous) throws IOException {
+    DoublePoint[] centers = previous.toArray(new DoublePoint[previous.size()]);
+    for (Path file : centerFiles(fs, path)) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file)));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        centers[Integer.parseInt(line.substring(0, tab))] = DoublePoint.parse(line.substring(tab + 1));
+      }
+      
+      reader.close();
+    }
+    
+    return Arrays.asList(centers);
+  }
+  
+  private static Path[] centerFiles(FileSystem fs, Path path) throws IOException {
+    if (fs.getFileStatus(path).isDir()) {
+      return listFiles(fs, path, "part-");
     }
     
-    // Create jobs varying mappers.
-    for (int i=5; i <= 20; i += 5) {
-      jobName = "kmeans-n-" + i;
-      fullDataPath = dataPath + "/data-100m.txt";
-      fullClusterPath = dataPath + "/centers-1000.txt";
-      outputPath = "/user/kmeans/output/" + jobName;
-      this.createJob(jobName, fullDataPath, fullClusterPath, outputPath, i);
+    return new Path[] {path};
+  }
+  
+  /**
+   * Write centers in the format x,y,... read by {@link #readCenters(FileSystem, Path)}.
+   */
+  static void writeCenters(FileSystem fs, Path path, List<DoublePoint> centers) throws IOException {
+    PrintStream out = new PrintStream(fs.create(path, true));
+    for (DoublePoint center : centers) {
+      out.println(center.format());
     }
     
+    out.close();
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 3.");
+      return printUsage();
+    }
+    
+    String outputPath = args[2];
+    List<DoublePoint> centers = this.runIterations("kmeans", args[0], args[1], outputPath,
+        getConf().getInt("mapred.map.tasks", 1), getConf().getInt("mapred.reduce.tasks", 1));
+    writeCenters(FileSystem.get(getConf()), new Path(outputPath, "centers.txt"), centers);
+    
     return 0;
   }
 
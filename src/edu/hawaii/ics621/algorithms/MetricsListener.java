@@ -0,0 +1,16 @@
+package edu.hawaii.ics621.algorithms;
+
+/**
+ * Receives the metrics of each iteration of an in-memory clustering algorithm. Set with
+ * {@link AbstractClusteringAlgorithm#setMetricsListener(MetricsListener)}.
+ * 
+ * @author George Lee
+ *
+ */
+public interface MetricsListener {
+  
+  /**
+   * Called after the centers have been moved at the end of an iteration.
+   */
+  void iterationFinished(IterationMetrics metrics);
+}
@@ -0,0 +1,180 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Iterator;
+import java.util.List;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.PointSet;
+
+/**
+ * Mini-batch K-Means. Each batch is assigned to the current clusters and every point then pulls its cluster towards
+ * it with a learning rate of one over the number of points the cluster has seen. Only one batch is held at a time,
+ * so inputs can be streamed from an iterator in constant memory, and clustering stops after a fixed number of
+ * batches or once a batch no longer moves any cluster more than EPSILON.
+ * 
+ * @author George Lee
+ *
+ */
+public class MiniBatchKMeans extends AbstractClusteringAlgorithm {
+  private final int batchSize;
+  private final int maxBatches;
+  
+  /**
+   * @param batchSize The number of points in each batch.
+   * @param maxBatches The maximum number of batches to process.
+   */
+  public MiniBatchKMeans(int batchSize, int maxBatches) {
+    this.batchSize = batchSize;
+    this.maxBatches = maxBatches;
+  }
+  
+  /**
+   * Cluster inputs that are read once, in batches, from an iterator. The initial clusters are picked at random from
+   * the first batch.
+   */
+  public List<DoublePoint> cluster(Iterator<DoublePoint> inputs, int numClusters) {
+    if (!inputs.hasNext()) {
+      throw new IllegalArgumentException("There are no inputs to cluster");
+    }
+    
+    DoublePoint first = inputs.next();
+    int dimensions = first.getDimensions();
+    double[] batch = new double[this.batchSize * dimensions];
+    System.arraycopy(first.getCoords(), 0, batch, 0, dimensions);
+    int size = 1 + fill(inputs, batch, 1, dimensions);
+    
+    if (size < numClusters) {
+      throw new IllegalArgumentException("The first batch has " + size + " points, fewer than " + numClusters
+          + " clusters");
+    }
+    
+    // Pick distinct points of the first batch as the initial clusters.
+    double[] centers = new double[numClusters * dimensions];
+    boolean[] picked = new boolean[size];
+    for (int j = 0; j < numClusters; j++) {
+      int item = this.generator.nextInt(size);
+      while (picked[item]) {
+        item = this.generator.nextInt(size);
+      }
+      
+      picked[item] = true;
+      System.arraycopy(batch, item * dimensions, centers, j * dimensions, dimensions);
+    }
+    
+    Batches batches = new Batches(centers, dimensions);
+    int count = 0;
+    while (size > 0 && count < this.maxBatches) {
+      count++;
+      if (!batches.step(batch, size)) {
+        break;
+      }
+      
+      size = fill(inputs, batch, 0, dimensions);
+    }
+    
+    System.out.println("Number of batches: " + count);
+    return toPoints(centers, dimensions);
+  }
+  
+  /**
+   * Cluster inputs held in memory by sampling each batch at random.
+   */
+  @Override
+  protected List<DoublePoint> clusterInputs(PointSet inputs, List<DoublePoint> clusters) {
+    int dimensions = inputs.dimensions();
+    double[] centers = toCoords(clusters);
+    double[] batch = new double[this.batchSize * dimensions];
+    double[] point = new double[dimensions];
+    
+    Batches batches = new Batches(centers, dimensions);
+    int count = 0;
+    boolean changed = true;
+    while (changed && count < this.maxBatches) {
+      for (int i = 0; i < this.batchSize; i++) {
+        inputs.copy(this.generator.nextInt(inputs.size()), point);
+        System.arraycopy(point, 0, batch, i * dimensions, dimensions);
+      }
+      
+      changed = batches.step(batch, this.batchSize);
+      count++;
+    }
+    
+    System.out.println("Number of batches: " + count);
+    return toPoints(centers, dimensions);
+  }
+  
+  /**
+   * Copy points from the iterator into the batch, starting at the given position.
+   * 
+   * @return the number of points copied.
+   */
+  private static int fill(Iterator<DoublePoint> inputs, double[] batch, int start, int dimensions) {
+    int position = start;
+    while (position < batch.length / dimensions && inputs.hasNext()) {
+      System.arraycopy(inputs.next().getCoords(), 0, batch, position * dimensions, dimensions);
+      position++;
+    }
+    
+    return position - start;
+  }
+  
+  /**
+   * The state kept between batches: the clusters, how many points each has seen and the index over them.
+   */
+  private static class Batches {
+    private final double[] centers;
+    private final double[] previous;
+    private final long[] counts;
+    private final int dimensions;
+    private final NearestCenterIndex index;
+    private int[] nearest = new int[0];
+    private final double[] point;
+    
+    Batches(double[] centers, int dimensions) {
+      this.centers = centers;
+      this.previous = new double[centers.length];
+      this.counts = new long[centers.length / dimensions];
+      this.dimensions = dimensions;
+      this.index = NearestCenterIndex.create(NearestCenterIndex.AUTO, centers, dimensions);
+      this.point = new double[dimensions];
+    }
+    
+    /**
+     * Assign a batch to the clusters and then move the clusters towards their points.
+     * 
+     * @return true if any cluster moved more than EPSILON.
+     */
+    boolean step(double[] batch, int size) {
+      if (this.nearest.length < size) {
+        this.nearest = new int[size];
+      }
+      
+      // Assign the whole batch before any cluster moves.
+      for (int i = 0; i < size; i++) {
+        System.arraycopy(batch, i * this.dimensions, this.point, 0, this.dimensions);
+        this.nearest[i] = this.index.nearest(this.point);
+      }
+      
+      System.arraycopy(this.centers, 0, this.previous, 0, this.centers.length);
+      for (int i = 0; i < size; i++) {
+        int offset = this.nearest[i] * this.dimensions;
+        this.counts[this.nearest[i]]++;
+        double rate = 1.0 / this.counts[this.nearest[i]];
+        for (int d = 0; d < this.dimensions; d++) {
+          this.centers[offset + d] += rate * (batch[i * this.dimensions + d] - this.centers[offset + d]);
+        }
+      }
+      
+      this.index.rebuild();
+      
+      for (int j = 0; j < this.counts.length; j++) {
+        int offset = j * this.dimensions;
+        if (Distance.squared(this.centers, offset, this.previous, offset, this.dimensions) > EPSILON * EPSILON) {
+          return true;
+        }
+      }
+      
+      return false;
+    }
+  }
+}
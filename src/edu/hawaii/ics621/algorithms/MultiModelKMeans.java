@@ -0,0 +1,312 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.io.Centers;
+import edu.hawaii.ics621.io.PartialSumWritable;
+import edu.hawaii.ics621.io.PointWritable;
+
+/**
+ * Trains several K-Means models in one pass over the input per iteration, such as random restarts or a sweep over
+ * the number of clusters. The centers of every model are sent as one set, one model after another, so a cluster
+ * is identified by its model and its index in that model through a global index: the number of clusters of the
+ * models before it plus its index. The reducers of {@link MapReduceKMeans} then work on the global indexes as is.
+ * 
+ * The mapper assigns each point to a cluster of every model and writes the SSE of each model to a side file,
+ * which the driver sums over the map tasks. A model that has converged is left out of the later iterations. The final
+ * centers of model M are written to model-M.txt and the SSE of every model against those centers to models.txt,
+ * so the best restart can be kept or an elbow curve drawn.
+ * 
+ * @author George Lee
+ *
+ */
+public class MultiModelKMeans extends Configured implements Tool {
+  static final String MODEL_SIZES_KEY = "kmeans.models.sizes";
+  
+  /**
+   * Assigns each point to its nearest cluster in every model, combining the partial sums in the mapper.
+   */
+  public static class MultiMap extends MapReduceBase
+      implements Mapper<NullWritable, PointWritable, IntWritable, PartialSumWritable> {
+    
+    private JobConf conf;
+    private NearestCenterIndex[] indexes;
+    private int[] offsets;
+    private int dimensions;
+    
+    private double[] sums;
+    private long[] counts;
+    private double[] sse;
+    private OutputCollector<IntWritable, PartialSumWritable> output;
+    private final IntWritable outKey = new IntWritable();
+    private final PartialSumWritable outValue = new PartialSumWritable();
+    
+    private Reporter reporter;
+    private long points;
+    private long distances;
+    
+    /**
+     * Get the centers from the distributed cache and build an index over the centers of each model.
+     */
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+      
+      Centers centers;
+      try {
+        centers = Centers.load(conf);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not load the centers", e);
+      }
+      
+      String[] sizes = conf.getStrings(MODEL_SIZES_KEY);
+      this.dimensions = centers.dimensions();
+      this.indexes = new NearestCenterIndex[sizes.length];
+      this.offsets = new int[sizes.length];
+      String indexType = conf.get(MapReduceKMeans.INDEX_KEY, NearestCenterIndex.AUTO);
+      
+      int offset = 0;
+      for (int m = 0; m < sizes.length; m++) {
+        int size = Integer.parseInt(sizes[m]);
+        double[] coords = Arrays.copyOfRange(centers.getCoords(), offset * this.dimensions,
+            (offset + size) * this.dimensions);
+        this.indexes[m] = NearestCenterIndex.create(indexType, coords, this.dimensions);
+        this.offsets[m] = offset;
+        offset += size;
+      }
+      
+      this.sums = new double[centers.size() * this.dimensions];
+      this.counts = new long[centers.size()];
+      this.sse = new double[sizes.length];
+    }
+    
+    @Override
+    public void map(NullWritable key, PointWritable input,
+        OutputCollector<IntWritable, PartialSumWritable> output, Reporter reporter) throws IOException {
+      this.output = output;
+      this.reporter = reporter;
+      this.points++;
+      
+      // The point is read once and assigned in every model.
+      double[] point = input.getCoords();
+      for (int m = 0; m < this.indexes.length; m++) {
+        int cluster = this.offsets[m] + this.indexes[m].nearest(point);
+        this.sse[m] += this.indexes[m].getNearestDistance();
+        Distance.add(this.sums, cluster * this.dimensions, point, 0, this.dimensions);
+        this.counts[cluster]++;
+      }
+    }
+    
+    /**
+     * Emit one partial sum per cluster of every model and report the SSE of each model.
+     */
+    @Override
+    public void close() throws IOException {
+      if (this.output != null) {
+        for (int i = 0; i < this.counts.length; i++) {
+          if (this.counts[i] > 0) {
+            this.outKey.set(i);
+            this.outValue.set(this.sums, i * this.dimensions, this.dimensions, this.counts[i]);
+            this.output.collect(this.outKey, this.outValue);
+          }
+        }
+        
+        for (int m = 0; m < this.indexes.length; m++) {
+          this.distances += this.indexes[m].getDistances();
+        }
+        MapReduceKMeans.writeSse(this.conf, this.sse);
+        this.reporter.incrCounter(MapReduceKMeans.Counter.POINTS, this.points);
+        this.reporter.incrCounter(MapReduceKMeans.Counter.DISTANCES, this.distances);
+        this.reporter.incrCounter(MapReduceKMeans.Counter.DISTANCES_SKIPPED, this.points * this.counts.length
+            - this.distances);
+      }
+      super.close();
+    }
+  }
+  
+  static int printUsage() {
+    System.out.println("MultiModelKMeans <inputs> <output> <clusters> [<clusters> ...]");
+    System.out.println("Each clusters file holds the initial centers of one model.");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  private RunningJob createJob(String jobName, String dataPath, List<Integer> active, List<List<DoublePoint>> models,
+      Path centersPath, String outputPath, int numMappers, int numReducers) throws Exception {
+    JobConf conf = new JobConf(getConf(), MultiModelKMeans.class);
+    
+    conf.setJobName(jobName);
+    
+    MapReduceKMeans.setInput(conf, dataPath);
+    conf.setMapOutputValueClass(PartialSumWritable.class);
+    conf.setOutputKeyClass(IntWritable.class);
+    conf.setOutputValueClass(Text.class);
+    
+    conf.setMapperClass(MultiMap.class);
+    conf.setReducerClass(MapReduceKMeans.Reduce.class);
+    conf.setPartitionerClass(MapReduceKMeans.ClusterPartitioner.class);
+    
+    // Send the centers of the active models as one set.
+    List<DoublePoint> centers = new ArrayList<DoublePoint>();
+    String[] sizes = new String[active.size()];
+    for (int i = 0; i < active.size(); i++) {
+      List<DoublePoint> model = models.get(active.get(i));
+      centers.addAll(model);
+      sizes[i] = Integer.toString(model.size());
+    }
+    conf.setStrings(MODEL_SIZES_KEY, sizes);
+    conf.setInt(MapReduceKMeans.CLUSTERS_KEY, centers.size());
+    
+    conf.setNumMapTasks(numMappers);
+    conf.setNumReduceTasks(numReducers);
+    FileOutputFormat.setOutputPath(conf, new Path(outputPath));
+    
+    new Centers(centers).share(conf, centersPath);
+    
+    return JobClient.runJob(conf);
+  }
+  
+  /**
+   * Runs one job per Lloyd iteration over every model that has not converged yet, until every model has converged
+   * or the maximum number of iterations is reached. On return, each model holds the centers its SSE was measured
+   * against: its final centers if it converged, since they moved less than EPSILON in its last iteration, or the
+   * centers sent to the last iteration if it was stopped by the limit.
+   * 
+   * @return the SSE of each model against its centers in models.
+   */
+  public double[] runIterations(String jobName, String dataPath, List<List<DoublePoint>> models, String outputPath,
+      int numMappers, int numReducers) throws Exception {
+    int maxIterations = getConf().getInt(MapReduceKMeans.MAX_ITERATIONS_KEY,
+        AbstractClusteringAlgorithm.MAX_ITERATIONS);
+    FileSystem fs = FileSystem.get(getConf());
+    double[] sse = new double[models.size()];
+    List<Integer> active = new ArrayList<Integer>();
+    for (int m = 0; m < models.size(); m++) {
+      active.add(m);
+    }
+    int iterations = 0;
+    
+    long start = System.currentTimeMillis();
+    while (!active.isEmpty() && iterations < maxIterations) {
+      String iterationPath = outputPath + "/iteration-" + iterations;
+      
+      long iterationStart = System.currentTimeMillis();
+      RunningJob job = this.createJob(jobName + "-" + iterations, dataPath, active, models,
+          new Path(outputPath, "centers-" + iterations + ".bin"), iterationPath, numMappers, numReducers);
+      long iterationEnd = System.currentTimeMillis();
+      
+      // Split the centers back into their models and keep the models that moved.
+      List<DoublePoint> previous = new ArrayList<DoublePoint>();
+      for (int m : active) {
+        previous.addAll(models.get(m));
+      }
+      List<DoublePoint> centers = MapReduceKMeans.readCenters(fs, new Path(iterationPath), previous);
+      
+      // The side files list the SSE of the active models in the order they were sent, measured against the centers
+      // sent. A model that still moves in the last iteration keeps those centers so that its SSE stays true to them.
+      double[] activeSse = MapReduceKMeans.readSse(fs, new Path(iterationPath), active.size());
+      List<Integer> moved = new ArrayList<Integer>();
+      int offset = 0;
+      for (int i = 0; i < active.size(); i++) {
+        int m = active.get(i);
+        int size = models.get(m).size();
+        List<DoublePoint> model = new ArrayList<DoublePoint>(centers.subList(offset, offset + size));
+        sse[m] = activeSse[i];
+        boolean modelMoved = moved(previous.subList(offset, offset + size), model);
+        if (modelMoved) {
+          moved.add(m);
+        }
+        if (!modelMoved || iterations + 1 < maxIterations) {
+          models.set(m, model);
+        }
+        offset += size;
+      }
+      
+      System.out.println(jobName + " iteration " + iterations + " took " + (iterationEnd - iterationStart)
+          + " ms over " + active.size() + " models, " + (active.size() - moved.size()) + " converged");
+      active = moved;
+      iterations++;
+    }
+    long end = System.currentTimeMillis();
+    
+    System.out.println(jobName + " took " + ((end - start) / 1000) + " seconds over " + iterations + " iterations");
+    return sse;
+  }
+  
+  /**
+   * @return true if any center moved more than EPSILON.
+   */
+  private static boolean moved(List<DoublePoint> before, List<DoublePoint> after) {
+    for (int i = 0; i < before.size(); i++) {
+      double[] a = before.get(i).getCoords();
+      double[] b = after.get(i).getCoords();
+      if (Distance.squared(a, 0, b, 0, a.length) > AbstractClusteringAlgorithm.EPSILON
+          * AbstractClusteringAlgorithm.EPSILON) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of at least 3.");
+      return printUsage();
+    }
+    
+    FileSystem fs = FileSystem.get(getConf());
+    List<List<DoublePoint>> models = new ArrayList<List<DoublePoint>>();
+    for (int i = 2; i < args.length; i++) {
+      models.add(MapReduceKMeans.readCenters(fs, new Path(args[i])));
+    }
+    
+    String outputPath = args[1];
+    double[] sse = this.runIterations("kmeans-models", args[0], models, outputPath,
+        getConf().getInt("mapred.map.tasks", 1), getConf().getInt("mapred.reduce.tasks", 1));
+    
+    // Write the centers of every model and a summary to pick the best model from.
+    int best = 0;
+    PrintStream summary = new PrintStream(fs.create(new Path(outputPath, "models.txt"), true));
+    for (int m = 0; m < models.size(); m++) {
+      MapReduceKMeans.writeCenters(fs, new Path(outputPath, "model-" + m + ".txt"), models.get(m));
+      summary.println(m + "\t" + args[m + 2] + "\t" + models.get(m).size() + "\t" + sse[m]);
+      if (sse[m] < sse[best]) {
+        best = m;
+      }
+    }
+    summary.close();
+    
+    System.out.println("Lowest SSE: model " + best + " from " + args[best + 2] + " with " + sse[best]);
+    return 0;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new MultiModelKMeans(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,104 @@
+package edu.hawaii.ics621.algorithms;
+
+import edu.hawaii.ics621.Distance;
+
+/**
+ * Finds the nearest center to a point. An index is built once per iteration from the current centers and is then
+ * queried for every input. Ties are broken in favor of the lowest center index, so all implementations assign
+ * points the same way.
+ * 
+ * @author George Lee
+ *
+ */
+public abstract class NearestCenterIndex {
+  public static final String AUTO = "auto";
+  public static final String BRUTE_FORCE = "brute";
+  public static final String KD_TREE = "kdtree";
+  
+  /**
+   * Below this many centers a linear scan is faster than walking a tree.
+   */
+  public static final int BRUTE_FORCE_MAX_CENTERS = 16;
+  
+  /**
+   * A kd-tree only prunes well when there are many more centers than the 2^d cells a split on every dimension
+   * makes, so AUTO only uses one up to log2(k) dimensions and never above this many.
+   */
+  public static final int KD_TREE_MAX_DIMENSIONS = 10;
+  
+  protected final double[] coords;
+  protected final int dimensions;
+  
+  // Not thread safe; threads that want accurate counts should each use their own index.
+  protected long distances;
+  protected double nearestDistance;
+  
+  protected NearestCenterIndex(double[] coords, int dimensions) {
+    this.coords = coords;
+    this.dimensions = dimensions;
+  }
+  
+  /**
+   * Build an index over the centers.
+   * 
+   * @param type One of AUTO, BRUTE_FORCE or KD_TREE.
+   * @param coords The coordinates of the centers, stored one center after another.
+   * @param dimensions The number of coordinates of each center.
+   */
+  public static NearestCenterIndex create(String type, double[] coords, int dimensions) {
+    if (KD_TREE.equals(type) || (AUTO.equals(type) && prefersKdTree(coords.length / dimensions, dimensions))) {
+      return new KdTreeIndex(coords, dimensions);
+    }
+    if (BRUTE_FORCE.equals(type) || AUTO.equals(type)) {
+      return new BruteForceIndex(coords, dimensions);
+    }
+    
+    throw new IllegalArgumentException("Unknown index type: " + type);
+  }
+  
+  /**
+   * @return true if a kd-tree should beat a linear scan over this many centers in this many dimensions.
+   */
+  static boolean prefersKdTree(int centers, int dimensions) {
+    return centers > BRUTE_FORCE_MAX_CENTERS && dimensions <= KD_TREE_MAX_DIMENSIONS
+        && (1 << dimensions) <= centers;
+  }
+  
+  public int size() {
+    return this.coords.length / this.dimensions;
+  }
+  
+  /**
+   * @return the index of the center nearest to the point.
+   */
+  public abstract int nearest(double[] point);
+  
+  /**
+   * @return the squared distance from the point passed to the last call to {@link #nearest(double[])} to the
+   *     center it returned.
+   */
+  public double getNearestDistance() {
+    return this.nearestDistance;
+  }
+  
+  /**
+   * @return the number of distances computed by this index so far.
+   */
+  public long getDistances() {
+    return this.distances;
+  }
+  
+  /**
+   * Update the index after the coordinates of the centers have been changed in place.
+   */
+  public void rebuild() {
+  }
+  
+  /**
+   * @return the squared distance between a center and a point.
+   */
+  protected double distance(int center, double[] point) {
+    this.distances++;
+    return Distance.squared(this.coords, center * this.dimensions, point, 0, this.dimensions);
+  }
+}
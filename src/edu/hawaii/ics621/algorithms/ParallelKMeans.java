@@ -0,0 +1,219 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+import edu.hawaii.ics621.IntArray;
+import edu.hawaii.ics621.PointSet;
+
+/**
+ * K-Means that assigns points on a fork/join pool. The inputs are cut into fixed-size chunks, each chunk sums its
+ * points into a buffer taken from a pool, and the buffers are merged pairwise up a binary tree over the chunks. The
+ * chunks and the tree depend only on the number of inputs, so the result is the same for any number of threads,
+ * while the buffers are reused so that only those of the chunks in flight take memory. Each
+ * chunk builds its own index over the centers, so the indexes can count their distances without sharing state.
+ * 
+ * @author George Lee
+ *
+ */
+public class ParallelKMeans extends AbstractClusteringAlgorithm {
+  static final int CHUNK_SIZE = 1 << 14;
+  
+  private final int threads;
+  private final String indexType;
+  
+  public ParallelKMeans() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+  
+  public ParallelKMeans(int threads) {
+    this(threads, NearestCenterIndex.AUTO);
+  }
+  
+  /**
+   * @param threads The number of worker threads.
+   * @param indexType The type of {@link NearestCenterIndex} used to find the nearest cluster.
+   */
+  public ParallelKMeans(int threads, String indexType) {
+    this.threads = threads;
+    this.indexType = indexType;
+  }
+  
+  @Override
+  protected List<DoublePoint> clusterInputs(PointSet inputs, List<DoublePoint> clusters) {
+    int dimensions = inputs.dimensions();
+    int chunks = (int) (((long) inputs.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    double[] centers = toCoords(clusters);
+    
+    // Every chunk in flight gets its own sums, counters and index so the workers never share a buffer.
+    ChunkState state = new ChunkState(inputs, centers, this.indexType, clusters.size(), this.offHeap);
+    
+    ForkJoinPool pool = new ForkJoinPool(this.threads);
+    boolean changed = true;
+    int iterations = 0;
+    
+    try {
+      while (changed && iterations < MAX_ITERATIONS) {
+        long start = System.nanoTime();
+        PartialSums totals = pool.invoke(new AssignTask(state, 0, chunks));
+        long assigned = System.nanoTime();
+        
+        changed = moveCenters(centers, totals.sums, totals.counts, dimensions);
+        
+        if (this.listener != null) {
+          long points = inputs.size();
+          this.listener.iterationFinished(new IterationMetrics(iterations, points, totals.distances,
+              points * clusters.size() - totals.distances, totals.moved, totals.counts.clone(),
+              totals.sse, assigned - start, System.nanoTime() - assigned));
+        }
+        state.release(totals);
+        iterations++;
+      }
+    } finally {
+      pool.shutdown();
+    }
+    
+    System.out.println("Number of iterations: " + iterations);
+    return toPoints(centers, dimensions);
+  }
+  
+  /**
+   * The state shared by every chunk, including a pool of free buffers. A buffer is taken by each chunk and given
+   * back once it has been merged into its neighbor, so only the buffers of the chunks in flight are live at once.
+   */
+  private static class ChunkState {
+    final PointSet inputs;
+    final double[] centers;
+    final String indexType;
+    final int clusters;
+    final IntArray assignments;
+    final Queue<PartialSums> free = new ConcurrentLinkedQueue<PartialSums>();
+    
+    ChunkState(PointSet inputs, double[] centers, String indexType, int clusters, boolean offHeap) {
+      this.inputs = inputs;
+      this.centers = centers;
+      this.indexType = indexType;
+      this.clusters = clusters;
+      this.assignments = IntArray.allocate(inputs.size(), offHeap);
+      this.assignments.fill(-1);
+    }
+    
+    PartialSums acquire() {
+      PartialSums partial = this.free.poll();
+      if (partial == null) {
+        return new PartialSums(this.centers.length, this.clusters);
+      }
+      
+      Arrays.fill(partial.sums, 0);
+      Arrays.fill(partial.counts, 0);
+      partial.distances = 0;
+      partial.moved = 0;
+      partial.sse = 0;
+      return partial;
+    }
+    
+    void release(PartialSums partial) {
+      this.free.add(partial);
+    }
+  }
+  
+  /**
+   * The sums, counters and totals of a range of chunks.
+   */
+  private static class PartialSums {
+    final double[] sums;
+    final long[] counts;
+    long distances;
+    long moved;
+    double sse;
+    
+    PartialSums(int coords, int clusters) {
+      this.sums = new double[coords];
+      this.counts = new long[clusters];
+    }
+    
+    void add(PartialSums other) {
+      Distance.add(this.sums, 0, other.sums, 0, this.sums.length);
+      for (int j = 0; j < this.counts.length; j++) {
+        this.counts[j] += other.counts[j];
+      }
+      this.distances += other.distances;
+      this.moved += other.moved;
+      this.sse += other.sse;
+    }
+  }
+  
+  /**
+   * Assigns the points in a range of chunks and returns the sums of the range.
+   */
+  private static class AssignTask extends RecursiveTask<PartialSums> {
+    private static final long serialVersionUID = 1L;
+    
+    private final ChunkState state;
+    private final int first;
+    private final int last;
+    
+    AssignTask(ChunkState state, int first, int last) {
+      this.state = state;
+      this.first = first;
+      this.last = last;
+    }
+    
+    @Override
+    protected PartialSums compute() {
+      if (this.last - this.first == 1) {
+        return this.assignChunk(this.first);
+      }
+      
+      int mid = (this.first + this.last) >>> 1;
+      AssignTask right = new AssignTask(this.state, mid, this.last);
+      right.fork();
+      PartialSums sums = new AssignTask(this.state, this.first, mid).compute();
+      PartialSums rightSums = right.join();
+      
+      // Merge the right half into the left half, always in the same order, and free the right buffer.
+      sums.add(rightSums);
+      this.state.release(rightSums);
+      return sums;
+    }
+    
+    private PartialSums assignChunk(int chunk) {
+      ChunkState state = this.state;
+      int dimensions = state.inputs.dimensions();
+      PartialSums partial = state.acquire();
+      double[] chunkSums = partial.sums;
+      long[] chunkCounts = partial.counts;
+      double[] point = new double[dimensions];
+      
+      // Building an index takes far less time than searching it for a whole chunk.
+      NearestCenterIndex index = NearestCenterIndex.create(state.indexType, state.centers, dimensions);
+      long moved = 0;
+      double sse = 0;
+      
+      // In longs, since the end of the last chunk can pass the largest int.
+      int end = (int) Math.min(state.inputs.size(), (chunk + 1L) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        state.inputs.copy(i, point);
+        int nearest = index.nearest(point);
+        sse += index.getNearestDistance();
+        if (state.assignments.get(i) != nearest) {
+          state.assignments.set(i, nearest);
+          moved++;
+        }
+        
+        Distance.add(chunkSums, nearest * dimensions, point, 0, dimensions);
+        chunkCounts[nearest]++;
+      }
+      
+      partial.distances = index.getDistances();
+      partial.moved = moved;
+      partial.sse = sse;
+      return partial;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package edu.hawaii.ics621.algorithms;
+
+import java.util.Arrays;
+import java.util.Random;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoubleArray;
+import edu.hawaii.ics621.PointSet;
+
+/**
+ * Picks initial clusters with k-means++: each new cluster is an input chosen with probability proportional to its
+ * weight times its squared distance to the nearest cluster picked so far. Also refines clusters over a small
+ * weighted set of points, which is how the candidates of the k-means|| seeding job are reduced to k clusters.
+ * 
+ * @author George Lee
+ *
+ */
+public final class Seeding {
+  
+  private Seeding() {
+  }
+  
+  /**
+   * Pick clusters from the points with k-means++.
+   * 
+   * @param weights The weight of each point, or null to weigh every point the same.
+   * @return the clusters stored one after another.
+   */
+  public static double[] plusPlus(PointSet points, double[] weights, int numClusters, Random generator) {
+    return plusPlus(points, weights, numClusters, generator, false);
+  }
+  
+  /**
+   * Pick clusters from the points with k-means++, keeping the distance from each point to its nearest cluster off
+   * the heap if offHeap is set.
+   */
+  public static double[] plusPlus(PointSet points, double[] weights, int numClusters, Random generator,
+      boolean offHeap) {
+    int n = points.size();
+    int dimensions = points.dimensions();
+    double[] centers = new double[numClusters * dimensions];
+    DoubleArray nearest = DoubleArray.allocate(n, offHeap);
+    double[] point = new double[dimensions];
+    nearest.fill(Double.MAX_VALUE);
+    
+    for (int j = 0; j < numClusters; j++) {
+      // The first cluster only depends on the weights.
+      int chosen = sample(j == 0 ? null : nearest, weights, n, generator);
+      
+      points.copy(chosen, point);
+      System.arraycopy(point, 0, centers, j * dimensions, dimensions);
+      
+      // Update the squared distance from every point to its nearest cluster.
+      for (int i = 0; i < n; i++) {
+        points.copy(i, point);
+        nearest.set(i, Math.min(nearest.get(i), Distance.squared(point, 0, centers, j * dimensions, dimensions)));
+      }
+    }
+    
+    return centers;
+  }
+  
+  /**
+   * Run weighted Lloyd iterations over the points until no cluster moves more than the tolerance.
+   */
+  public static void refine(PointSet points, double[] weights, double[] centers, int maxIterations,
+      double tolerance) {
+    int dimensions = points.dimensions();
+    double[] sums = new double[centers.length];
+    double[] totals = new double[centers.length / dimensions];
+    double[] point = new double[dimensions];
+    NearestCenterIndex index = NearestCenterIndex.create(NearestCenterIndex.AUTO, centers, dimensions);
+    boolean changed = true;
+    int iterations = 0;
+    
+    while (changed && iterations < maxIterations) {
+      Arrays.fill(sums, 0);
+      Arrays.fill(totals, 0);
+      for (int i = 0; i < points.size(); i++) {
+        points.copy(i, point);
+        int j = index.nearest(point);
+        double weight = weights == null ? 1 : weights[i];
+        for (int d = 0; d < dimensions; d++) {
+          sums[j * dimensions + d] += weight * point[d];
+        }
+        totals[j] += weight;
+      }
+      
+      changed = false;
+      for (int j = 0; j < totals.length; j++) {
+        if (totals[j] == 0) {
+          continue;
+        }
+        
+        double delta = 0;
+        for (int d = 0; d < dimensions; d++) {
+          double average = sums[j * dimensions + d] / totals[j];
+          double diff = centers[j * dimensions + d] - average;
+          delta += diff * diff;
+          centers[j * dimensions + d] = average;
+        }
+        
+        if (delta > tolerance * tolerance) {
+          changed = true;
+        }
+      }
+      
+      index.rebuild();
+      iterations++;
+    }
+  }
+  
+  /**
+   * Pick one of n indexes with probability proportional to its score times its weight. A missing array counts as
+   * all ones. If every product is zero the index is picked uniformly.
+   */
+  static int sample(DoubleArray scores, double[] weights, int n, Random generator) {
+    double total = 0;
+    for (int i = 0; i < n; i++) {
+      total += value(scores, weights, i);
+    }
+    
+    if (total <= 0) {
+      return generator.nextInt(n);
+    }
+    
+    double target = generator.nextDouble() * total;
+    int last = 0;
+    for (int i = 0; i < n; i++) {
+      double value = value(scores, weights, i);
+      if (value > 0) {
+        last = i;
+        target -= value;
+        if (target < 0) {
+          return i;
+        }
+      }
+    }
+    
+    // Rounding can leave a little of the total unspent.
+    return last;
+  }
+  
+  private static double value(DoubleArray scores, double[] weights, int i) {
+    return (scores == null ? 1 : scores.get(i)) * (weights == null ? 1 : weights[i]);
+  }
+}
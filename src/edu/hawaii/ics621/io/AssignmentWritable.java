@@ -0,0 +1,50 @@
+package edu.hawaii.ics621.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The cluster a point was assigned to and its distance to the center of that cluster. As text it is written as the
+ * cluster and the distance separated by a tab. Written after a point, the line can still be read by
+ * {@link TextPointInputFormat}, which ignores everything after the first tab.
+ * 
+ * @author George Lee
+ *
+ */
+public class AssignmentWritable implements Writable {
+  private int cluster;
+  private double distance;
+  
+  public void set(int cluster, double distance) {
+    this.cluster = cluster;
+    this.distance = distance;
+  }
+  
+  public int getCluster() {
+    return this.cluster;
+  }
+  
+  public double getDistance() {
+    return this.distance;
+  }
+  
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, this.cluster);
+    out.writeDouble(this.distance);
+  }
+  
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.cluster = WritableUtils.readVInt(in);
+    this.distance = in.readDouble();
+  }
+  
+  @Override
+  public String toString() {
+    return this.cluster + "\t" + this.distance;
+  }
+}
@@ -0,0 +1,58 @@
+package edu.hawaii.ics621.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The cluster a point was assigned to with Hamerly's bounds: an upper bound on the distance to the center of that
+ * cluster and a lower bound on the distance to every other center. Written next to a point so that the next
+ * iteration can tell whether the assignment can still change without computing any distances.
+ * 
+ * @author George Lee
+ *
+ */
+public class BoundsWritable implements Writable {
+  private int cluster;
+  private double upper;
+  private double lower;
+  
+  public void set(int cluster, double upper, double lower) {
+    this.cluster = cluster;
+    this.upper = upper;
+    this.lower = lower;
+  }
+  
+  public int getCluster() {
+    return this.cluster;
+  }
+  
+  public double getUpper() {
+    return this.upper;
+  }
+  
+  public double getLower() {
+    return this.lower;
+  }
+  
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, this.cluster);
+    out.writeDouble(this.upper);
+    out.writeDouble(this.lower);
+  }
+  
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.cluster = WritableUtils.readVInt(in);
+    this.upper = in.readDouble();
+    this.lower = in.readDouble();
+  }
+  
+  @Override
+  public String toString() {
+    return this.cluster + "\t" + this.upper + "\t" + this.lower;
+  }
+}
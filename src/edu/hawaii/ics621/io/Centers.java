@@ -0,0 +1,157 @@
+package edu.hawaii.ics621.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import edu.hawaii.ics621.DoublePoint;
+
+/**
+ * Cluster centers stored one after another in a single primitive array. Centers are shipped to the tasks as a
+ * binary file in the distributed cache and loaded once per task JVM.
+ * 
+ * @author George Lee
+ *
+ */
+public class Centers {
+  public static final String PATH_KEY = "kmeans.centers.path";
+  
+  // The centers last loaded for each configuration key, by path.
+  private static final Map<String, String> cachedNames = new HashMap<String, String>();
+  private static final Map<String, Centers> cached = new HashMap<String, Centers>();
+  
+  private final double[] coords;
+  private final int dimensions;
+  
+  public Centers(double[] coords, int dimensions) {
+    this.coords = coords;
+    this.dimensions = dimensions;
+  }
+  
+  public Centers(List<DoublePoint> points) {
+    this.dimensions = points.get(0).getDimensions();
+    this.coords = new double[points.size() * this.dimensions];
+    for (int i = 0; i < points.size(); i++) {
+      System.arraycopy(points.get(i).getCoords(), 0, this.coords, i * this.dimensions, this.dimensions);
+    }
+  }
+  
+  public int size() {
+    return this.coords.length / this.dimensions;
+  }
+  
+  public int dimensions() {
+    return this.dimensions;
+  }
+  
+  public double get(int index, int dimension) {
+    return this.coords[index * this.dimensions + dimension];
+  }
+  
+  /**
+   * @return the centers stored one after another.
+   */
+  public double[] getCoords() {
+    return this.coords;
+  }
+  
+  public DoublePoint toPoint(int index) {
+    double[] point = new double[this.dimensions];
+    System.arraycopy(this.coords, index * this.dimensions, point, 0, this.dimensions);
+    return new DoublePoint(point);
+  }
+  
+  public List<DoublePoint> toPoints() {
+    List<DoublePoint> points = new ArrayList<DoublePoint>(this.size());
+    for (int i = 0; i < this.size(); i++) {
+      points.add(this.toPoint(i));
+    }
+    
+    return points;
+  }
+  
+  /**
+   * Write the centers to a binary file and add it to the distributed cache of the job.
+   */
+  public void share(Configuration conf, Path path) throws IOException {
+    this.share(conf, path, PATH_KEY);
+  }
+  
+  /**
+   * Write the centers to a binary file and add it to the distributed cache under another configuration key, so
+   * that a job can be sent more than one set of centers.
+   */
+  public void share(Configuration conf, Path path, String key) throws IOException {
+    FileSystem fs = path.getFileSystem(conf);
+    DataOutputStream out = fs.create(path, true);
+    this.write(out);
+    out.close();
+    
+    DistributedCache.addCacheFile(path.toUri(), conf);
+    conf.set(key, path.toString());
+  }
+  
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(this.size());
+    out.writeInt(this.dimensions);
+    for (double coord : this.coords) {
+      out.writeDouble(coord);
+    }
+  }
+  
+  public static Centers read(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    int dimensions = in.readInt();
+    double[] coords = new double[size * dimensions];
+    for (int i = 0; i < coords.length; i++) {
+      coords[i] = in.readDouble();
+    }
+    
+    return new Centers(coords, dimensions);
+  }
+  
+  /**
+   * Load the centers shared with {@link #share(Configuration, Path)}. The centers are read from the local copy in
+   * the distributed cache if there is one, and are kept for later tasks that run in the same JVM.
+   */
+  public static Centers load(Configuration conf) throws IOException {
+    return load(conf, PATH_KEY);
+  }
+  
+  /**
+   * Load the centers shared with {@link #share(Configuration, Path, String)}.
+   */
+  public static synchronized Centers load(Configuration conf, String key) throws IOException {
+    Path path = new Path(conf.get(key));
+    if (path.toString().equals(cachedNames.get(key))) {
+      return cached.get(key);
+    }
+    
+    FileSystem fs = path.getFileSystem(conf);
+    Path[] localFiles = DistributedCache.getLocalCacheFiles(conf);
+    if (localFiles != null) {
+      for (Path localFile : localFiles) {
+        if (localFile.getName().equals(path.getName())) {
+          fs = FileSystem.getLocal(conf);
+          path = localFile;
+          break;
+        }
+      }
+    }
+    
+    DataInputStream in = fs.open(path);
+    Centers centers = read(in);
+    in.close();
+    
+    cachedNames.put(key, conf.get(key));
+    cached.put(key, centers);
+    return centers;
+  }
+}
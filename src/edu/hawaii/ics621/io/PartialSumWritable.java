@@ -0,0 +1,112 @@
+package edu.hawaii.ics621.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import edu.hawaii.ics621.Distance;
+import edu.hawaii.ics621.DoublePoint;
+
+/**
+ * Partial sum of the points assigned to a cluster and the number of points in the sum. Sums are written as raw
+ * doubles, so they survive any number of combine steps without a decimal round trip.
+ * 
+ * @author George Lee
+ *
+ */
+public class PartialSumWritable implements Writable {
+  private double[] sums;
+  private long count;
+  
+  public PartialSumWritable() {
+    this.sums = new double[0];
+  }
+  
+  /**
+   * Copy the sums into this partial sum.
+   */
+  public void set(double[] sums, int offset, int dimensions, long count) {
+    this.resize(dimensions);
+    System.arraycopy(sums, offset, this.sums, 0, dimensions);
+    this.count = count;
+  }
+  
+  public void set(double[] sums, long count) {
+    this.set(sums, 0, sums.length, count);
+  }
+  
+  /**
+   * Reset to an empty sum of the given dimensions.
+   */
+  public void clear(int dimensions) {
+    this.resize(dimensions);
+    Arrays.fill(this.sums, 0);
+    this.count = 0;
+  }
+  
+  /**
+   * Add another partial sum to this one. An empty sum takes the dimensions of the other sum.
+   */
+  public void add(PartialSumWritable other) {
+    if (this.count == 0) {
+      this.clear(other.sums.length);
+    }
+    
+    Distance.add(this.sums, 0, other.sums, 0, this.sums.length);
+    this.count += other.count;
+  }
+  
+  public int getDimensions() {
+    return this.sums.length;
+  }
+  
+  public double get(int dimension) {
+    return this.sums[dimension];
+  }
+  
+  public long getCount() {
+    return this.count;
+  }
+  
+  /**
+   * @return the mean of the summed points.
+   */
+  public DoublePoint average() {
+    double[] coords = new double[this.sums.length];
+    for (int d = 0; d < coords.length; d++) {
+      coords[d] = this.sums[d] / this.count;
+    }
+    
+    return new DoublePoint(coords);
+  }
+  
+  private void resize(int dimensions) {
+    if (this.sums.length != dimensions) {
+      this.sums = new double[dimensions];
+    }
+  }
+  
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, this.sums.length);
+    for (double sum : this.sums) {
+      out.writeDouble(sum);
+    }
+    out.writeLong(this.count);
+  }
+  
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.resize(WritableUtils.readVInt(in));
+    for (int d = 0; d < this.sums.length; d++) {
+      this.sums[d] = in.readDouble();
+    }
+    this.count = in.readLong();
+  }
+  
+  public String toString() {
+    return new DoublePoint(this.sums).format() + "," + this.count;
+  }
+}
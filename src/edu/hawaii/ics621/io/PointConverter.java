@@ -0,0 +1,62 @@
+package edu.hawaii.ics621.io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.mapred.lib.IdentityMapper;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Map-only job that rewrites text point files (x,y per line) as SequenceFiles of {@link PointWritable} that can be
+ * read with {@link PointInputFormat}.
+ * 
+ * @author George Lee
+ *
+ */
+public class PointConverter extends Configured implements Tool {
+  
+  static int printUsage() {
+    System.out.println("PointConverter <inputs> <output>");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 2.");
+      return printUsage();
+    }
+    
+    JobConf conf = new JobConf(getConf(), PointConverter.class);
+    conf.setJobName("kmeans-convert");
+    
+    // The text format parses each line; the identity mapper passes the points through.
+    conf.setInputFormat(TextPointInputFormat.class);
+    conf.setOutputFormat(SequenceFileOutputFormat.class);
+    
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(PointWritable.class);
+    
+    conf.setMapperClass(IdentityMapper.class);
+    conf.setNumReduceTasks(0);
+    
+    FileInputFormat.setInputPaths(conf, new Path(args[0]));
+    FileOutputFormat.setOutputPath(conf, new Path(args[1]));
+    
+    JobClient.runJob(conf);
+    return 0;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new PointConverter(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,356 @@
+package edu.hawaii.ics621.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Generates points drawn from Gaussian blobs, either with a map-only job or with a pool of local threads. The blob
+ * centers are drawn uniformly from [0, spread) in every dimension and each point picks a blob uniformly. Every
+ * output file is generated from its own seed, so both modes write the same points for the same seed. The blob
+ * centers are written to _centers.txt in the output directory, which input formats skip.
+ * 
+ * Points are written as text in the format x,y,... or, with kmeans.generator.binary, as SequenceFiles that can be
+ * read with {@link PointInputFormat}.
+ * 
+ * @author George Lee
+ *
+ */
+public class PointGenerator extends Configured implements Tool {
+  public static final String SEED_KEY = "kmeans.generator.seed";
+  public static final String SPREAD_KEY = "kmeans.generator.spread";
+  public static final String DEVIATION_KEY = "kmeans.generator.deviation";
+  public static final String BINARY_KEY = "kmeans.generator.binary";
+  public static final String LOCAL_KEY = "kmeans.generator.local";
+  public static final String THREADS_KEY = "kmeans.generator.threads";
+  static final String POINTS_KEY = "kmeans.generator.points";
+  static final String CLUSTERS_KEY = "kmeans.generator.clusters";
+  static final String DIMENSIONS_KEY = "kmeans.generator.dimensions";
+  static final String FILES_KEY = "kmeans.generator.files";
+  
+  static final String CENTERS_FILE = "_centers.txt";
+  
+  /**
+   * Map-only task that writes all the points of one file.
+   */
+  public static class GenerateMap extends MapReduceBase
+      implements Mapper<IntWritable, NullWritable, NullWritable, PointWritable> {
+    
+    private JobConf conf;
+    
+    @Override
+    public void configure(JobConf conf) {
+      super.configure(conf);
+      this.conf = conf;
+    }
+    
+    @Override
+    public void map(IntWritable file, NullWritable value, OutputCollector<NullWritable, PointWritable> output,
+        Reporter reporter) throws IOException {
+      generateFile(this.conf, file.get(), output, reporter);
+    }
+  }
+  
+  /**
+   * Creates one split per output file. Each split reads as a single record holding the file number.
+   */
+  public static class FileNumberInputFormat implements InputFormat<IntWritable, NullWritable> {
+    
+    @Override
+    public InputSplit[] getSplits(JobConf conf, int numSplits) throws IOException {
+      int files = conf.getInt(FILES_KEY, 1);
+      InputSplit[] splits = new InputSplit[files];
+      for (int i = 0; i < files; i++) {
+        splits[i] = new FileNumberSplit(i);
+      }
+      
+      return splits;
+    }
+    
+    @Override
+    public RecordReader<IntWritable, NullWritable> getRecordReader(InputSplit split, JobConf conf,
+        Reporter reporter) throws IOException {
+      final int file = ((FileNumberSplit) split).file;
+      return new RecordReader<IntWritable, NullWritable>() {
+        private boolean read = false;
+        
+        @Override
+        public boolean next(IntWritable key, NullWritable value) throws IOException {
+          if (this.read) {
+            return false;
+          }
+          
+          key.set(file);
+          this.read = true;
+          return true;
+        }
+        
+        @Override
+        public IntWritable createKey() {
+          return new IntWritable();
+        }
+        
+        @Override
+        public NullWritable createValue() {
+          return NullWritable.get();
+        }
+        
+        @Override
+        public long getPos() throws IOException {
+          return this.read ? 1 : 0;
+        }
+        
+        @Override
+        public float getProgress() throws IOException {
+          return this.read ? 1 : 0;
+        }
+        
+        @Override
+        public void close() throws IOException {
+        }
+      };
+    }
+  }
+  
+  /**
+   * A split that only names the output file to generate.
+   */
+  public static class FileNumberSplit implements InputSplit {
+    private int file;
+    
+    public FileNumberSplit() {
+    }
+    
+    FileNumberSplit(int file) {
+      this.file = file;
+    }
+    
+    @Override
+    public long getLength() throws IOException {
+      return 0;
+    }
+    
+    @Override
+    public String[] getLocations() throws IOException {
+      return new String[0];
+    }
+    
+    @Override
+    public void write(DataOutput out) throws IOException {
+      out.writeInt(this.file);
+    }
+    
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      this.file = in.readInt();
+    }
+  }
+  
+  /**
+   * @return the blob centers stored one after another, picked from the seed alone.
+   */
+  static double[] blobCenters(Configuration conf) {
+    Random generator = new Random(conf.getLong(SEED_KEY, 0));
+    double spread = conf.getFloat(SPREAD_KEY, 100);
+    double[] centers = new double[conf.getInt(CLUSTERS_KEY, 1) * conf.getInt(DIMENSIONS_KEY, 2)];
+    for (int i = 0; i < centers.length; i++) {
+      centers[i] = generator.nextDouble() * spread;
+    }
+    
+    return centers;
+  }
+  
+  /**
+   * Write the points of one file. The points are split as evenly as possible between the files.
+   */
+  static void generateFile(Configuration conf, int file, OutputCollector<NullWritable, PointWritable> output,
+      Reporter reporter) throws IOException {
+    long points = conf.getLong(POINTS_KEY, 0);
+    int files = conf.getInt(FILES_KEY, 1);
+    int dimensions = conf.getInt(DIMENSIONS_KEY, 2);
+    double deviation = conf.getFloat(DEVIATION_KEY, 1);
+    double[] centers = blobCenters(conf);
+    int clusters = centers.length / dimensions;
+    
+    long count = points / files + (file < points % files ? 1 : 0);
+    Random generator = new Random(conf.getLong(SEED_KEY, 0) * 1000003 + file + 1);
+    double[] coords = new double[dimensions];
+    PointWritable point = new PointWritable();
+    
+    for (long i = 0; i < count; i++) {
+      int offset = generator.nextInt(clusters) * dimensions;
+      for (int d = 0; d < dimensions; d++) {
+        coords[d] = centers[offset + d] + generator.nextGaussian() * deviation;
+      }
+      
+      point.set(coords, 0, dimensions);
+      output.collect(NullWritable.get(), point);
+      if ((i & 0xFFFF) == 0) {
+        reporter.progress();
+      }
+    }
+  }
+  
+  static int printUsage() {
+    System.out.println("PointGenerator <output> <points> <clusters> <dimensions> <files>");
+    ToolRunner.printGenericCommandUsage(System.out);
+    return -1;
+  }
+  
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 5) {
+      System.out.println("ERROR: Wrong number of parameters: " + args.length + " instead of 5.");
+      return printUsage();
+    }
+    
+    Configuration conf = getConf();
+    Path output = new Path(args[0]);
+    try {
+      conf.setLong(POINTS_KEY, Long.parseLong(args[1]));
+      conf.setInt(CLUSTERS_KEY, Integer.parseInt(args[2]));
+      conf.setInt(DIMENSIONS_KEY, Integer.parseInt(args[3]));
+      conf.setInt(FILES_KEY, Integer.parseInt(args[4]));
+    } catch (NumberFormatException except) {
+      System.out.println("ERROR: Integer expected: " + except.getMessage());
+      return printUsage();
+    }
+    
+    long start = System.currentTimeMillis();
+    if (conf.getBoolean(LOCAL_KEY, false)) {
+      this.generateLocally(conf, output);
+    } else {
+      this.generateWithJob(conf, output);
+    }
+    
+    // Keep the blob centers next to the points to compare the clustering against.
+    double[] centers = blobCenters(conf);
+    int dimensions = conf.getInt(DIMENSIONS_KEY, 2);
+    FileSystem fs = output.getFileSystem(conf);
+    PrintStream out = new PrintStream(fs.create(new Path(output, CENTERS_FILE), true));
+    PointWritable center = new PointWritable();
+    for (int i = 0; i < centers.length / dimensions; i++) {
+      center.set(centers, i * dimensions, dimensions);
+      out.println(center);
+    }
+    out.close();
+    
+    System.out.println("Generated " + args[1] + " points in " + (System.currentTimeMillis() - start) + " ms");
+    return 0;
+  }
+  
+  private void generateWithJob(Configuration base, Path output) throws IOException {
+    JobConf conf = new JobConf(base, PointGenerator.class);
+    conf.setJobName("kmeans-generate");
+    
+    conf.setInputFormat(FileNumberInputFormat.class);
+    if (conf.getBoolean(BINARY_KEY, false)) {
+      conf.setOutputFormat(SequenceFileOutputFormat.class);
+    } else {
+      conf.setOutputFormat(TextOutputFormat.class);
+    }
+    conf.setOutputKeyClass(NullWritable.class);
+    conf.setOutputValueClass(PointWritable.class);
+    
+    conf.setMapperClass(GenerateMap.class);
+    conf.setNumMapTasks(conf.getInt(FILES_KEY, 1));
+    conf.setNumReduceTasks(0);
+    FileOutputFormat.setOutputPath(conf, output);
+    
+    JobClient.runJob(conf);
+  }
+  
+  /**
+   * Write the files from a pool of threads, named like the output of the job.
+   */
+  private void generateLocally(final Configuration conf, final Path output) throws IOException,
+      InterruptedException {
+    final FileSystem fs = output.getFileSystem(conf);
+    final boolean binary = conf.getBoolean(BINARY_KEY, false);
+    int files = conf.getInt(FILES_KEY, 1);
+    ExecutorService pool = Executors.newFixedThreadPool(conf.getInt(THREADS_KEY,
+        Runtime.getRuntime().availableProcessors()));
+    
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int i = 0; i < files; i++) {
+        final int file = i;
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            Path path = new Path(output, String.format("part-%05d", file));
+            if (binary) {
+              final SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, path, NullWritable.class,
+                  PointWritable.class);
+              generateFile(conf, file, new OutputCollector<NullWritable, PointWritable>() {
+                @Override
+                public void collect(NullWritable key, PointWritable value) throws IOException {
+                  writer.append(key, value);
+                }
+              }, Reporter.NULL);
+              writer.close();
+            } else {
+              final PrintStream writer = new PrintStream(new BufferedOutputStream(fs.create(path, true)));
+              generateFile(conf, file, new OutputCollector<NullWritable, PointWritable>() {
+                @Override
+                public void collect(NullWritable key, PointWritable value) throws IOException {
+                  writer.println(value);
+                }
+              }, Reporter.NULL);
+              writer.close();
+              if (writer.checkError()) {
+                throw new IOException("Could not write " + path);
+              }
+            }
+            
+            return null;
+          }
+        }));
+      }
+      
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IOException("Could not generate the points", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new PointGenerator(), args);
+    System.exit(res);
+  }
+}
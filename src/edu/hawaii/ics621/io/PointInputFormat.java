@@ -0,0 +1,14 @@
+package edu.hawaii.ics621.io;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+
+/**
+ * Reads points from the SequenceFiles written by {@link PointConverter}. Records are deserialized straight into
+ * the reused {@link PointWritable}, so no strings are created per point.
+ * 
+ * @author George Lee
+ *
+ */
+public class PointInputFormat extends SequenceFileInputFormat<NullWritable, PointWritable> {
+}
@@ -0,0 +1,83 @@
+package edu.hawaii.ics621.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import edu.hawaii.ics621.DoublePoint;
+
+/**
+ * Binary representation of a point, stored as the number of dimensions followed by fixed-width doubles. The
+ * coordinate array is reused while the number of dimensions stays the same.
+ * 
+ * @author George Lee
+ *
+ */
+public class PointWritable implements Writable {
+  private double[] coords;
+  
+  public PointWritable() {
+    this.coords = new double[0];
+  }
+  
+  public PointWritable(double... coords) {
+    this.coords = coords;
+  }
+  
+  /**
+   * Copy the coordinates into this point.
+   */
+  public void set(double[] coords, int offset, int dimensions) {
+    if (this.coords.length != dimensions) {
+      this.coords = new double[dimensions];
+    }
+    System.arraycopy(coords, offset, this.coords, 0, dimensions);
+  }
+  
+  public void set(double... coords) {
+    this.set(coords, 0, coords.length);
+  }
+  
+  public int getDimensions() {
+    return this.coords.length;
+  }
+  
+  public double get(int dimension) {
+    return this.coords[dimension];
+  }
+  
+  /**
+   * @return the coordinates backing this point.
+   */
+  public double[] getCoords() {
+    return this.coords;
+  }
+  
+  public DoublePoint toPoint() {
+    return new DoublePoint(this.coords.clone());
+  }
+  
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, this.coords.length);
+    for (double coord : this.coords) {
+      out.writeDouble(coord);
+    }
+  }
+  
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    int dimensions = WritableUtils.readVInt(in);
+    if (this.coords.length != dimensions) {
+      this.coords = new double[dimensions];
+    }
+    for (int d = 0; d < dimensions; d++) {
+      this.coords[d] = in.readDouble();
+    }
+  }
+  
+  public String toString() {
+    return new DoublePoint(this.coords).format();
+  }
+}
@@ -0,0 +1,264 @@
+package edu.hawaii.ics621.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+
+/**
+ * A copy of the points parsed from a split, kept on the local disk of the node that parsed them. Later jobs over
+ * the same split that run on the same node read the points back without touching HDFS or parsing text. Cache files
+ * are named by the path, start, length and modification time of the split, so a changed input is never read from
+ * an old cache. Nothing is evicted; the cache directory has to be cleaned up by hand.
+ * 
+ * A task only finds the cache if it runs on the node that wrote it. By default that is left to the scheduler, so
+ * with data-local scheduling a split is found in the cache about as often as the task lands on the same one of the
+ * nodes holding a replica of its block. With kmeans.input.cache.registry set to a directory on the shared file
+ * system, each node that caches a split leaves an empty file named after itself there, and
+ * {@link #preferCachedHosts(JobConf, InputSplit[])} lists those nodes first in the locations of the split so
+ * the scheduler places the task on a node holding the cache when it can. The SPLITS_FROM_CACHE and
+ * SPLITS_NOT_IN_CACHE counters of {@link TextPointInputFormat} show the hit rate either way.
+ * 
+ * A cache file holds the number of dimensions as an int followed by the coordinates of each point. Splits whose
+ * points do not all have the same number of dimensions are not cached.
+ * 
+ * @author George Lee
+ *
+ */
+public class SplitCache {
+  public static final String DIR_KEY = "kmeans.input.cache.dir";
+  public static final String REGISTRY_KEY = "kmeans.input.cache.registry";
+  
+  private static final int HEADER_SIZE = 4;
+  
+  private final JobConf conf;
+  private final String name;
+  private final File file;
+  
+  public SplitCache(JobConf conf, FileSplit split) throws IOException {
+    File dir = new File(conf.get(DIR_KEY, System.getProperty("java.io.tmpdir") + "/kmeans-cache"));
+    this.conf = conf;
+    this.name = name(split, split.getPath().getFileSystem(conf).getFileStatus(split.getPath()));
+    this.file = new File(dir, this.name + ".bin");
+  }
+  
+  /**
+   * Put the nodes that hold a cache of a split in front of its locations, for every split with a cache listed in
+   * the registry. Does nothing if there is no registry.
+   */
+  public static void preferCachedHosts(JobConf conf, InputSplit[] splits) throws IOException {
+    String registry = conf.get(REGISTRY_KEY);
+    if (registry == null) {
+      return;
+    }
+    
+    FileSystem fs = new Path(registry).getFileSystem(conf);
+    Map<Path, FileStatus> statuses = new HashMap<Path, FileStatus>();
+    for (int i = 0; i < splits.length; i++) {
+      FileSplit split = (FileSplit) splits[i];
+      FileStatus status = statuses.get(split.getPath());
+      if (status == null) {
+        status = split.getPath().getFileSystem(conf).getFileStatus(split.getPath());
+        statuses.put(split.getPath(), status);
+      }
+      
+      // A missing directory lists as null.
+      FileStatus[] markers = fs.listStatus(new Path(registry, name(split, status)));
+      if (markers == null || markers.length == 0) {
+        continue;
+      }
+      
+      Set<String> hosts = new LinkedHashSet<String>();
+      for (FileStatus marker : markers) {
+        hosts.add(marker.getPath().getName());
+      }
+      hosts.addAll(Arrays.asList(split.getLocations()));
+      splits[i] = new FileSplit(split.getPath(), split.getStart(), split.getLength(),
+          hosts.toArray(new String[hosts.size()]));
+    }
+  }
+  
+  private static String name(FileSplit split, FileStatus status) throws IOException {
+    String key = split.getPath() + ":" + split.getStart() + ":" + split.getLength() + ":"
+        + status.getModificationTime();
+    return "split-" + digest(key);
+  }
+  
+  /**
+   * @return a reader over the cached points, or null if this node has no cache of the split.
+   */
+  public RecordReader<NullWritable, PointWritable> open() throws IOException {
+    if (!this.file.isFile()) {
+      return null;
+    }
+    
+    return new CachedRecordReader(this.file);
+  }
+  
+  /**
+   * @return a writer that fills the cache as the split is parsed.
+   */
+  public Writer create() throws IOException {
+    File dir = this.file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Could not create the cache directory " + dir);
+    }
+    
+    return new Writer(this, File.createTempFile(this.file.getName(), ".tmp", dir));
+  }
+  
+  /**
+   * Leave a marker for this node in the registry, if there is one.
+   */
+  private void publish() throws IOException {
+    String registry = this.conf.get(REGISTRY_KEY);
+    if (registry != null) {
+      Path marker = new Path(new Path(registry, this.name), InetAddress.getLocalHost().getHostName());
+      marker.getFileSystem(this.conf).create(marker, true).close();
+    }
+  }
+  
+  private static String digest(String key) throws IOException {
+    try {
+      byte[] hash = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+      StringBuilder builder = new StringBuilder();
+      for (byte b : hash) {
+        builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      
+      return builder.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("Could not name the cache file", e);
+    }
+  }
+  
+  /**
+   * Writes the points to a temporary file that only replaces the cache file once the whole split is written, so
+   * a failed or parallel attempt never leaves a partial cache behind.
+   */
+  public static class Writer {
+    private final SplitCache cache;
+    private final File temp;
+    private final DataOutputStream out;
+    private int dimensions = -1;
+    
+    Writer(SplitCache cache, File temp) throws IOException {
+      this.cache = cache;
+      this.temp = temp;
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+    }
+    
+    /**
+     * @return false if the point cannot be cached, in which case the writer has been aborted.
+     */
+    public boolean add(double[] coords, int dimensions) throws IOException {
+      if (this.dimensions < 0) {
+        this.dimensions = dimensions;
+        this.out.writeInt(dimensions);
+      } else if (this.dimensions != dimensions) {
+        this.abort();
+        return false;
+      }
+      
+      for (int d = 0; d < dimensions; d++) {
+        this.out.writeDouble(coords[d]);
+      }
+      return true;
+    }
+    
+    /**
+     * Publish the cache after the last point of the split.
+     */
+    public void commit() throws IOException {
+      this.out.close();
+      if (this.dimensions < 0 || !this.temp.renameTo(this.cache.file)) {
+        this.temp.delete();
+      } else {
+        this.cache.publish();
+      }
+    }
+    
+    public void abort() throws IOException {
+      this.out.close();
+      this.temp.delete();
+    }
+  }
+  
+  /**
+   * Reads the points of a cache file through a memory mapping.
+   */
+  static class CachedRecordReader implements RecordReader<NullWritable, PointWritable> {
+    private final MappedByteBuffer buffer;
+    private final double[] coords;
+    
+    CachedRecordReader(File file) throws IOException {
+      RandomAccessFile input = new RandomAccessFile(file, "r");
+      try {
+        this.buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+      } finally {
+        input.close();
+      }
+      
+      this.coords = new double[this.buffer.getInt(0)];
+      this.buffer.position(HEADER_SIZE);
+    }
+    
+    @Override
+    public boolean next(NullWritable key, PointWritable value) throws IOException {
+      if (this.buffer.remaining() < this.coords.length * 8) {
+        return false;
+      }
+      
+      for (int d = 0; d < this.coords.length; d++) {
+        this.coords[d] = this.buffer.getDouble();
+      }
+      
+      value.set(this.coords, 0, this.coords.length);
+      return true;
+    }
+    
+    @Override
+    public NullWritable createKey() {
+      return NullWritable.get();
+    }
+    
+    @Override
+    public PointWritable createValue() {
+      return new PointWritable();
+    }
+    
+    @Override
+    public long getPos() throws IOException {
+      return this.buffer.position();
+    }
+    
+    @Override
+    public float getProgress() throws IOException {
+      return this.buffer.limit() == 0 ? 1 : (float) this.buffer.position() / this.buffer.limit();
+    }
+    
+    @Override
+    public void close() throws IOException {
+    }
+  }
+}
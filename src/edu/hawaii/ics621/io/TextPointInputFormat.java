@@ -0,0 +1,188 @@
+package edu.hawaii.ics621.io;
+
+import java.io.IOException;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.LineRecordReader;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+ * Reads points from text files with one point per line in the format x,y,... Anything after a tab is ignored, so
+ * files written for KeyValueTextInputFormat can still be read.
+ * 
+ * @author George Lee
+ *
+ */
+public class TextPointInputFormat extends FileInputFormat<NullWritable, PointWritable> {
+  
+  /**
+   * Measure the time spent parsing into the PARSE_MILLIS counter. Jobs that read points use the same key to turn
+   * on their own timing counters.
+   */
+  public static final String TIMING_KEY = "kmeans.metrics.timing";
+  
+  /**
+   * Keep the parsed points of each split in a {@link SplitCache} on the local disk, so that later iterations
+   * running on the same node read them from there.
+   */
+  public static final String CACHE_KEY = "kmeans.input.cache";
+  
+  public static enum Counter {
+    PARSE_MILLIS,
+    SPLITS_CACHED,
+    SPLITS_FROM_CACHE,
+    SPLITS_NOT_IN_CACHE
+  }
+  
+  /**
+   * When caching, place the tasks of splits that are already cached on the nodes that hold them if a registry of
+   * the caches is kept.
+   */
+  @Override
+  public InputSplit[] getSplits(JobConf conf, int numSplits) throws IOException {
+    InputSplit[] splits = super.getSplits(conf, numSplits);
+    if (conf.getBoolean(CACHE_KEY, false)) {
+      SplitCache.preferCachedHosts(conf, splits);
+    }
+    
+    return splits;
+  }
+  
+  @Override
+  public RecordReader<NullWritable, PointWritable> getRecordReader(InputSplit split, JobConf conf,
+      Reporter reporter) throws IOException {
+    reporter.setStatus(split.toString());
+    
+    SplitCache cache = null;
+    if (conf.getBoolean(CACHE_KEY, false)) {
+      cache = new SplitCache(conf, (FileSplit) split);
+      RecordReader<NullWritable, PointWritable> cached = cache.open();
+      if (cached != null) {
+        reporter.incrCounter(Counter.SPLITS_FROM_CACHE, 1);
+        return cached;
+      }
+      reporter.incrCounter(Counter.SPLITS_NOT_IN_CACHE, 1);
+    }
+    
+    TextPointRecordReader reader = new TextPointRecordReader(new LineRecordReader(conf, (FileSplit) split));
+    if (conf.getBoolean(TIMING_KEY, false)) {
+      reader.timer = reporter;
+    }
+    if (cache != null) {
+      reader.cache = cache.create();
+      reader.reporter = reporter;
+    }
+    
+    return reader;
+  }
+  
+  /**
+   * Parses each line returned by a LineRecordReader into a point.
+   */
+  static class TextPointRecordReader implements RecordReader<NullWritable, PointWritable> {
+    private final LineRecordReader reader;
+    private final LongWritable offset;
+    private final Text line;
+    private double[] coords = new double[0];
+    
+    // Set when parsing is timed.
+    private Reporter timer;
+    private long parseNanos;
+    
+    // Set while the split is being cached.
+    private SplitCache.Writer cache;
+    private Reporter reporter;
+    
+    TextPointRecordReader(LineRecordReader reader) {
+      this.reader = reader;
+      this.offset = reader.createKey();
+      this.line = reader.createValue();
+    }
+    
+    @Override
+    public boolean next(NullWritable key, PointWritable value) throws IOException {
+      if (!this.reader.next(this.offset, this.line)) {
+        if (this.cache != null) {
+          this.cache.commit();
+          this.cache = null;
+          this.reporter.incrCounter(Counter.SPLITS_CACHED, 1);
+        }
+        return false;
+      }
+      
+      long parseStart = this.timer != null ? System.nanoTime() : 0;
+      String text = this.line.toString();
+      int end = text.indexOf('\t');
+      if (end < 0) {
+        end = text.length();
+      }
+      
+      int dimensions = 1;
+      for (int i = 0; i < end; i++) {
+        if (text.charAt(i) == ',') {
+          dimensions++;
+        }
+      }
+      
+      if (this.coords.length != dimensions) {
+        this.coords = new double[dimensions];
+      }
+      
+      int start = 0;
+      for (int d = 0; d < dimensions; d++) {
+        int comma = d < dimensions - 1 ? text.indexOf(',', start) : end;
+        this.coords[d] = Double.parseDouble(text.substring(start, comma));
+        start = comma + 1;
+      }
+      
+      value.set(this.coords, 0, dimensions);
+      if (this.timer != null) {
+        this.parseNanos += System.nanoTime() - parseStart;
+      }
+      
+      if (this.cache != null && !this.cache.add(this.coords, dimensions)) {
+        this.cache = null;
+      }
+      return true;
+    }
+    
+    @Override
+    public NullWritable createKey() {
+      return NullWritable.get();
+    }
+    
+    @Override
+    public PointWritable createValue() {
+      return new PointWritable();
+    }
+    
+    @Override
+    public long getPos() throws IOException {
+      return this.reader.getPos();
+    }
+    
+    @Override
+    public float getProgress() throws IOException {
+      return this.reader.getProgress();
+    }
+    
+    @Override
+    public void close() throws IOException {
+      if (this.timer != null) {
+        this.timer.incrCounter(Counter.PARSE_MILLIS, this.parseNanos / 1000000);
+      }
+      
+      // The split was not read to the end, so the cache would be incomplete.
+      if (this.cache != null) {
+        this.cache.abort();
+      }
+      this.reader.close();
+    }
+  }
+}